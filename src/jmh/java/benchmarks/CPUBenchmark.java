@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import nes.Console;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Raw instruction throughput of CPU.execute() on the synthetic program, with the PPU not running.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CPUBenchmark {
+    private static final int INSTRUCTIONS_PER_INVOCATION = 1000;
+
+    private Console console;
+
+    @Setup
+    public void setUp() {
+        console = new Console.Builder()
+            .setCartridgePath(SyntheticRom.write().toString())
+            .build();
+        // Handle the RESET so we're in the program loop
+        console.cpu.execute();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS_PER_INVOCATION)
+    public long execute() {
+        for (int i = 0; i < INSTRUCTIONS_PER_INVOCATION; i++) {
+            console.cpu.execute();
+        }
+        return console.cpu.cycleCount;
+    }
+}
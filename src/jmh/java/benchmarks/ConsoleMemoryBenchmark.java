@@ -0,0 +1,104 @@
+package benchmarks;
+
+import io.NoopController;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import memory.ConsoleMemory;
+import nes.Cartridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ConsoleMemory.read/write over fixed address mixes. The addresses are generated up front from a fixed seed.
+ *
+ * RAM:       internal RAM and its mirrors
+ * PRG:       cartridge PRG-ROM
+ * GAME_LIKE: mostly RAM and PRG-ROM with a few PPU status and joypad register accesses mixed in
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsoleMemoryBenchmark {
+    private static final int NUM_ACCESSES = 1024;
+    private static final long SEED = 6502;
+
+    public enum AddressMix {
+        RAM,
+        PRG,
+        GAME_LIKE
+    }
+
+    @Param
+    public AddressMix addressMix;
+
+    private ConsoleMemory memory;
+    private int[] readAddresses;
+    private int[] writeAddresses;
+
+    @Setup
+    public void setUp() {
+        final Path rom = SyntheticRom.write();
+        memory = new ConsoleMemory(Cartridge.makeFrom(rom), new NoopController(), new NoopController());
+
+        final Random random = new Random(SEED);
+        readAddresses = new int[NUM_ACCESSES];
+        writeAddresses = new int[NUM_ACCESSES];
+        for (int i = 0; i < NUM_ACCESSES; i++) {
+            readAddresses[i] = nextReadAddress(random);
+            // Writes always go to RAM so they don't have side effects on the PPU or the cartridge
+            writeAddresses[i] = random.nextInt(0x2000);
+        }
+    }
+
+    private int nextReadAddress(final Random random) {
+        switch (addressMix) {
+            case RAM:
+                return random.nextInt(0x2000);
+            case PRG:
+                return 0x8000 + random.nextInt(0x8000);
+            default:
+                final int kind = random.nextInt(100);
+                if (kind < 45) {
+                    return random.nextInt(0x0800);
+                } else if (kind < 95) {
+                    return 0x8000 + random.nextInt(0x8000);
+                } else if (kind < 98) {
+                    return 0x2002;
+                } else {
+                    return 0x4016;
+                }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ACCESSES)
+    public int read() {
+        int sum = 0;
+        for (final int address : readAddresses) {
+            sum += memory.read(address);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ACCESSES)
+    public void write() {
+        for (int i = 0; i < NUM_ACCESSES; i++) {
+            memory.write(writeAddresses[i], (byte) i);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import nes.Console;
+import nes.RenderMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import web.transport.FrameDecoder;
+import web.transport.FrameEncoder;
+import web.transport.ImageMessage;
+
+/**
+ * Encoding frames into ImageMessages and decoding them again, on frames rendered by PPUBenchmark's console. The delta
+ * benchmarks alternate between two consecutive frames, so every message only holds the tiles that differ.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageMessageBenchmark {
+    private int[][] frames;
+    private int frameIndex;
+    private FrameEncoder keyframeEncoder;
+    private FrameEncoder deltaEncoder;
+    private byte[] serializedKeyframe;
+    private byte[][] serializedDeltas;
+    private FrameDecoder decoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Console console = PPUBenchmark.newRenderingConsole(RenderMode.DOT);
+        // The first frame is the empty one the PPU starts with
+        console.ppu.executeCycles(PPUBenchmark.PPU_CYCLES_PER_FRAME);
+        frames = new int[2][];
+        for (int i = 0; i < frames.length; i++) {
+            console.ppu.executeCycles(PPUBenchmark.PPU_CYCLES_PER_FRAME);
+            // Move a sprite so consecutive frames differ
+            console.cpu.memory.write(0x2003, (byte) 0x03);
+            console.cpu.memory.write(0x2004, (byte) (i * 16));
+            final int[] image = console.ppu.acquireImage();
+            frames[i] = image.clone();
+            console.ppu.releaseImage(image);
+        }
+
+        keyframeEncoder = new FrameEncoder();
+        deltaEncoder = new FrameEncoder();
+        serializedKeyframe = new FrameEncoder().encode(frames[0]).serialize();
+        serializedDeltas = new byte[2][];
+        final FrameEncoder encoder = new FrameEncoder();
+        encoder.encode(frames[0]);
+        serializedDeltas[0] = encoder.encode(frames[1]).serialize();
+        serializedDeltas[1] = encoder.encode(frames[0]).serialize();
+
+        decoder = new FrameDecoder();
+        decoder.decode(ImageMessage.deserialize(new ByteArrayInputStream(serializedKeyframe)));
+    }
+
+    @Benchmark
+    public byte[] encodeKeyframe() {
+        keyframeEncoder.requestKeyframe();
+        return keyframeEncoder.encode(frames[0]).serialize();
+    }
+
+    @Benchmark
+    public byte[] encodeDelta() {
+        frameIndex ^= 1;
+        return deltaEncoder.encode(frames[frameIndex]).serialize();
+    }
+
+    @Benchmark
+    public int[] decodeKeyframe() throws IOException {
+        return decoder.decode(ImageMessage.deserialize(new ByteArrayInputStream(serializedKeyframe)));
+    }
+
+    @Benchmark
+    public int[] decodeDelta() throws IOException {
+        frameIndex ^= 1;
+        return decoder.decode(ImageMessage.deserialize(new ByteArrayInputStream(serializedDeltas[frameIndex])));
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import memory.ConsoleMemory;
+import nes.Console;
+import nes.RenderMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to render one full frame (262 scanlines of 341 cycles) with background and sprites on, a fixed name table,
+ * palette and sprite layout, and no CPU activity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PPUBenchmark {
+    static final int PPU_CYCLES_PER_FRAME = 341 * 262;
+
+    private static final int NAME_TABLES_SIZE = 0x800; // Two name tables with their attribute tables
+    private static final int PALETTE_SIZE = 0x20;
+    private static final int SPRAM_SIZE = 0x100;
+
+    @Param
+    public RenderMode renderMode;
+
+    private Console console;
+
+    @Setup
+    public void setUp() {
+        console = newRenderingConsole(renderMode);
+    }
+
+    @Benchmark
+    public long renderFrame() {
+        console.ppu.executeCycles(PPU_CYCLES_PER_FRAME);
+        return console.ppu.getFrameCount();
+    }
+
+    /**
+     * Build a console on the synthetic ROM and fill in the name tables, palette and SPR-RAM through the PPU registers,
+     * like a game would during VBLANK. Rendering is turned on but NMIs are left off.
+     */
+    static Console newRenderingConsole(final RenderMode renderMode) {
+        final Console console = new Console.Builder()
+            .setCartridgePath(SyntheticRom.write().toString())
+            .setRenderMode(renderMode)
+            .build();
+        final ConsoleMemory memory = console.cpu.memory;
+
+        setVramAddress(memory, 0x2000);
+        for (int i = 0; i < NAME_TABLES_SIZE; i++) {
+            memory.write(0x2007, (byte) ((i * 7) ^ (i >> 5)));
+        }
+
+        setVramAddress(memory, 0x3F00);
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            memory.write(0x2007, (byte) ((i * 11) & 0x3F));
+        }
+
+        // 64 sprites spread over the screen
+        memory.write(0x2003, (byte) 0x00);
+        for (int i = 0; i < SPRAM_SIZE / 4; i++) {
+            memory.write(0x2004, (byte) ((i * 29) % 232)); // y
+            memory.write(0x2004, (byte) i); // tile
+            memory.write(0x2004, (byte) ((i & 0x03) | ((i & 0x0C) << 4))); // palette and flip bits
+            memory.write(0x2004, (byte) ((i * 53) % 248)); // x
+        }
+
+        setVramAddress(memory, 0x0000);
+        memory.write(0x2005, (byte) 0x00);
+        memory.write(0x2005, (byte) 0x00);
+        memory.write(0x2000, (byte) 0x00);
+        memory.write(0x2001, (byte) 0x1E); // Background and sprites on, including the leftmost 8 pixels
+        return console;
+    }
+
+    private static void setVramAddress(final ConsoleMemory memory, final int address) {
+        memory.write(0x2006, (byte) ((address >> 8) & 0xFF));
+        memory.write(0x2006, (byte) (address & 0xFF));
+    }
+}
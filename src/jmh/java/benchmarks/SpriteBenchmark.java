@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import memory.SPRAM;
+import memory.Sprite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sprite evaluation with SPRAM.fetchSprites for every visible line of a frame, with 64 sprites spread over the screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBenchmark {
+    private static final int NUM_VISIBLE_SCANLINES = 240;
+    private static final int NUM_SPRITES = 64;
+
+    private SPRAM spram;
+    private Sprite[] sprites;
+
+    @Setup
+    public void setUp() {
+        spram = new SPRAM();
+        for (int i = 0; i < NUM_SPRITES; i++) {
+            spram.write(i * 4, (byte) ((i * 29) % 232));
+            spram.write(i * 4 + 1, (byte) i);
+            spram.write(i * 4 + 2, (byte) (i & 0x03));
+            spram.write(i * 4 + 3, (byte) ((i * 53) % 248));
+        }
+
+        sprites = new Sprite[8];
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = new Sprite();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VISIBLE_SCANLINES)
+    public int fetchSprites() {
+        int numSprites = 0;
+        for (int line = 0; line < NUM_VISIBLE_SCANLINES; line++) {
+            numSprites += spram.fetchSprites(sprites, line);
+        }
+        return numSprites;
+    }
+}
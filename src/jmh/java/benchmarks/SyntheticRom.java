@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import nes.Cartridge;
+
+/**
+ * Writes a small iNES file (one PRG-ROM bank, one CHR-ROM bank, vertical mirroring) so the benchmarks don't depend on
+ * a game being on disk.
+ *
+ * The program at $8000 is a tight loop over immediate, zero page, indexed and absolute instructions with a branch, a
+ * subroutine call and stack operations, which gives a rough mix of what games run:
+ *
+ * 8000: LDX #$00
+ * 8002: LDY #$10
+ * 8004: LDA #$01      <- loop
+ * 8006: ADC #$03
+ * 8008: STA $00,X
+ * 800A: LDA $00,X
+ * 800C: STA $0200,X
+ * 800F: ASL A
+ * 8010: AND #$7F
+ * 8012: INX
+ * 8013: DEY
+ * 8014: BNE loop
+ * 8016: JSR $8020
+ * 8019: JMP $8002
+ * 8020: PHA
+ * 8021: PLA
+ * 8022: RTS
+ * 8023: RTI           <- NMI and IRQ handler
+ *
+ * The CHR-ROM is filled with an arbitrary but fixed pattern so rendering has pixels to draw.
+ */
+final class SyntheticRom {
+    private static final int HEADER_LENGTH = 0x10;
+    private static final int PRG_START = 0x8000;
+
+    private static final byte[] PROGRAM = {
+        (byte) 0xA2, 0x00,
+        (byte) 0xA0, 0x10,
+        (byte) 0xA9, 0x01,
+        0x69, 0x03,
+        (byte) 0x95, 0x00,
+        (byte) 0xB5, 0x00,
+        (byte) 0x9D, 0x00, 0x02,
+        0x0A,
+        0x29, 0x7F,
+        (byte) 0xE8,
+        (byte) 0x88,
+        (byte) 0xD0, (byte) 0xEE,
+        0x20, 0x20, (byte) 0x80,
+        0x4C, 0x02, (byte) 0x80,
+    };
+    private static final int SUBROUTINE_ADDRESS = 0x8020;
+    private static final byte[] SUBROUTINE = {0x48, 0x68, 0x60, 0x40};
+    private static final int INTERRUPT_HANDLER_ADDRESS = 0x8023;
+
+    private SyntheticRom() {}
+
+    /**
+     * Write the ROM to a temporary file that's deleted when the JVM exits.
+     *
+     * @return The path to the file
+     */
+    static Path write() {
+        final byte[] prg = new byte[Cartridge.PRG_ROM_BANK_SIZE];
+        System.arraycopy(PROGRAM, 0, prg, 0, PROGRAM.length);
+        System.arraycopy(SUBROUTINE, 0, prg, SUBROUTINE_ADDRESS - PRG_START, SUBROUTINE.length);
+        // The single bank is mirrored at $C000, so the vectors at the end of it land at $FFFA-$FFFF
+        setVector(prg, 0xFFFA, INTERRUPT_HANDLER_ADDRESS); // NMI
+        setVector(prg, 0xFFFC, PRG_START); // RESET
+        setVector(prg, 0xFFFE, INTERRUPT_HANDLER_ADDRESS); // IRQ
+
+        final byte[] chr = new byte[Cartridge.CHR_ROM_BANK_SIZE];
+        for (int i = 0; i < chr.length; i++) {
+            chr[i] = (byte) ((i * 37) ^ (i >> 4));
+        }
+
+        final byte[] file = new byte[HEADER_LENGTH + prg.length + chr.length];
+        file[0] = 'N';
+        file[1] = 'E';
+        file[2] = 'S';
+        file[3] = 0x1A;
+        file[4] = 1; // PRG-ROM banks
+        file[5] = 1; // CHR-ROM banks
+        file[6] = 0x01; // Vertical mirroring, mapper 0
+        System.arraycopy(prg, 0, file, HEADER_LENGTH, prg.length);
+        System.arraycopy(chr, 0, file, HEADER_LENGTH + prg.length, chr.length);
+
+        try {
+            final Path path = Files.createTempFile("synthetic", ".nes");
+            path.toFile().deleteOnExit();
+            Files.write(path, file);
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void setVector(final byte[] prg, final int address, final int target) {
+        final int offset = (address - PRG_START) % Cartridge.PRG_ROM_BANK_SIZE;
+        prg[offset] = (byte) (target & 0xFF);
+        prg[offset + 1] = (byte) ((target >> 8) & 0xFF);
+    }
+}
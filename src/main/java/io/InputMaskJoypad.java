@@ -0,0 +1,71 @@
+package io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A joypad whose buttons are all set at once from an 8-bit mask, with bit 0 for A through bit 7 for RIGHT (the order
+ * the NES reads them in). Used where the buttons for each frame have to be decided up front, like in netplay, instead
+ * of changing whenever a key event comes in.
+ */
+public class InputMaskJoypad implements Joypad {
+    public static final int STATE_SIZE = 3; // The number of bytes saveState() writes
+    private int currentButton;
+    private boolean strobe;
+    private volatile byte buttons;
+
+    public InputMaskJoypad() {
+        currentButton = 0;
+        strobe = false;
+        buttons = 0x0;
+    }
+
+    /**
+     * Set every button at once.
+     *
+     * @param buttons The mask of pressed buttons
+     */
+    public void setButtons(final byte buttons) {
+        this.buttons = buttons;
+    }
+
+    @Override
+    public byte getButtonMask() {
+        return buttons;
+    }
+
+    /**
+     * Write the buttons and how far the NES has read through them into a save state.
+     *
+     * @param buffer
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.put(buttons);
+        buffer.put((byte) currentButton);
+        buffer.put((byte) (strobe ? 1 : 0));
+    }
+
+    /**
+     * Read back what saveState() wrote.
+     *
+     * @param buffer
+     */
+    public void loadState(final ByteBuffer buffer) {
+        buttons = buffer.get();
+        currentButton = buffer.get();
+        strobe = buffer.get() == 1;
+    }
+
+    @Override
+    public byte read() {
+        byte value = (byte) (((buttons >> currentButton) & 0x01) == 0x01 ? 0x41 : 0x40);
+        if (!strobe) {
+            currentButton = (currentButton + 1) % 8;
+        }
+        return value;
+    }
+
+    @Override
+    public void write(byte value) {
+        strobe = (value & 0x01) == 0x01;
+    }
+}
@@ -14,4 +14,10 @@ public interface Joypad {
      * Write a byte to the Joypad
      */
     void write(byte value);
+
+    /**
+     * The buttons held right now as a mask, with bit 0 for A through bit 7 for RIGHT (the order the NES reads them
+     * in). Used to record a game's inputs.
+     */
+    byte getButtonMask();
 }
@@ -58,6 +58,22 @@ public class KeyboardController implements Joypad, Controller {
         return (byte) (buttonsPressedMap.get(buttonMappings[currentButton]) ? 0x41 : 0x40);
     }
 
+    /**
+     * Returns the buttons currently held down as a mask, with bit 0 for A through bit 7 for RIGHT.
+     *
+     * @return
+     */
+    @Override
+    public synchronized byte getButtonMask() {
+        int mask = 0;
+        for (int i = 0; i < buttonMappings.length; i++) {
+            if (buttonsPressedMap.get(buttonMappings[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return (byte) mask;
+    }
+
     @Override
     public void write(byte value) {
         strobe = (value & 0x01) == 0x01;
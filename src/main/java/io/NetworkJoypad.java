@@ -2,32 +2,18 @@ package io;
 
 import web.transport.ButtonMessage;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.Socket;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-
 /**
- * A joypad that listens for button presses over a network connection. This runs on the server and its counterpart
- * (a ClientController) should run on the client.
+ * A joypad whose buttons are pressed over a network connection. This runs on the server and its counterpart
+ * (a ClientController) should run on the client. The server's network event loop reads the button messages off the
+ * player's connection and hands them to handleButtonMessage().
  */
 public class NetworkJoypad implements Joypad {
     private int currentButton;
     private boolean strobe;
     private final boolean[] buttonsPressed = new boolean[8];
 
-    public NetworkJoypad(final Socket listenSocket) {
+    public NetworkJoypad() {
         reset();
-        final ScheduledExecutorService listener = Executors.newSingleThreadScheduledExecutor();
-        try {
-            final SocketHandler socketHandler = new SocketHandler(listenSocket);
-            listener.execute(socketHandler);
-        } catch (IOException e) {
-            System.out.println("IOException during socket handler creation: " + e);
-        } finally {
-            listener.shutdown();
-        }
     }
 
     private void reset() {
@@ -58,28 +44,15 @@ public class NetworkJoypad implements Joypad {
         strobe = (value & 0x01) == 0x01;
     }
 
-    /**
-     * A Runnable that reads updates on the listen socket and deserializes bytes into button events.
-     */
-    protected class SocketHandler implements Runnable {
-        private final InputStream inputStream;
-        public SocketHandler(final Socket listenSocket) throws IOException {
-            this.inputStream = listenSocket.getInputStream();
-        }
-
-        @Override
-        public void run() {
-            for(;;) {
-                try {
-                    byte[] readBuffer = new byte[1];
-                    inputStream.read(readBuffer);
-                    final ButtonMessage buttonMessage = ButtonMessage.deserialize(readBuffer);
-                    NetworkJoypad.this.handleButtonMessage(buttonMessage);
-                } catch (IOException e) {
-                    System.out.println("IOException thrown while reading from input stream: " + e.getStackTrace());
-                }
+    @Override
+    public synchronized byte getButtonMask() {
+        int mask = 0;
+        for (int i = 0; i < buttonsPressed.length; i++) {
+            if (buttonsPressed[i]) {
+                mask |= 1 << i;
             }
         }
+        return (byte) mask;
     }
 
     /**
@@ -98,8 +71,17 @@ public class NetworkJoypad implements Joypad {
      *
      * @param buttonMessage
      */
-    private synchronized void handleButtonMessage(ButtonMessage buttonMessage) {
+    public synchronized void handleButtonMessage(ButtonMessage buttonMessage) {
         final int ordinal = buttonMessage.ordinal();
         this.buttonsPressed[ordinal / 2] = (ordinal % 2 == 0);
     }
+
+    /**
+     * Let go of every button, e.g. when the player disconnects.
+     */
+    public synchronized void releaseAllButtons() {
+        for (int i = 0; i < buttonsPressed.length; i++) {
+            buttonsPressed[i] = false;
+        }
+    }
 }
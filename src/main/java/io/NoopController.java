@@ -14,6 +14,11 @@ public class NoopController implements Joypad, Controller {
     public void write(byte value) {
     }
 
+    @Override
+    public byte getButtonMask() {
+        return 0x0;
+    }
+
     @Override
     public void initializeListener() {
     }
@@ -1,24 +1,55 @@
 package memory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
- * A fixed size buffer implemented with an array and two pointers for front and back.
+ * A buffer implemented with an array and two pointers for front and back. Values are pushed onto the back and taken off
+ * either end.
+ *
+ * The buffer either holds a fixed number of values, or as many values as fit in a byte budget given a function that
+ * says how many bytes each value takes up. Either way, pushing onto a full buffer evicts values from the front.
  * @param <T> The type of value
  */
 public class CircularBuffer<T> {
-    private final List<T> buffer;
-    private final int size;
+    private static final int INITIAL_BUDGETED_SIZE = 16;
+
+    private Object[] buffer;
+    private final boolean growable; // Only budgeted buffers grow, fixed size ones evict instead
+    private final long byteBudget;
+    private final ToIntFunction<T> byteSize;
 
     private int front;
-    private int back;
-    private boolean atCapacity;
+    private int count;
+    private long totalBytes;
 
+    /**
+     * A buffer that holds the last size values.
+     *
+     * @param size
+     */
     public CircularBuffer(final int size) {
-        buffer = new ArrayList<>(Collections.nCopies(size, null));
-        this.size = size;
+        this(new Object[size], false, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * A buffer that holds as many of the last values as fit in byteBudget bytes.
+     *
+     * @param byteBudget The most bytes the values can take up. The newest value is always kept, even if it's bigger.
+     * @param byteSize   Returns how many bytes a value takes up
+     */
+    public CircularBuffer(final long byteBudget, final ToIntFunction<T> byteSize) {
+        this(new Object[INITIAL_BUDGETED_SIZE], true, byteBudget, byteSize);
+    }
+
+    private CircularBuffer(
+            final Object[] buffer,
+            final boolean growable,
+            final long byteBudget,
+            final ToIntFunction<T> byteSize) {
+        this.buffer = buffer;
+        this.growable = growable;
+        this.byteBudget = byteBudget;
+        this.byteSize = byteSize;
         clear();
     }
 
@@ -30,23 +61,46 @@ public class CircularBuffer<T> {
         if (retValue == null) {
             return null;
         }
+        buffer[front] = null;
         front = incrementPointer(front);
-        atCapacity = false;
+        count--;
+        totalBytes -= byteSize.applyAsInt(retValue);
+        return retValue;
+    }
+
+    /**
+     * Returns and removes the last value from the buffer.
+     */
+    public T pop() {
+        final T retValue = peekLast();
+        if (retValue == null) {
+            return null;
+        }
+        buffer[backIndex()] = null;
+        count--;
+        totalBytes -= byteSize.applyAsInt(retValue);
         return retValue;
     }
 
     /**
-     * Push a value into the buffer
+     * Push a value into the buffer, evicting values from the front until it fits.
      *
      * @param value
      */
     public void push(final T value) {
-        buffer.set(back, value);
-        back = incrementPointer(back);
-        if (atCapacity) {
-            front = back;
-        } else {
-            atCapacity = (front == back);
+        if (count == buffer.length) {
+            if (growable) {
+                grow();
+            } else {
+                get();
+            }
+        }
+        count++;
+        buffer[backIndex()] = value;
+        totalBytes += byteSize.applyAsInt(value);
+
+        while (totalBytes > byteBudget && count > 1) {
+            get();
         }
     }
 
@@ -55,26 +109,80 @@ public class CircularBuffer<T> {
      *
      * @return
      */
+    @SuppressWarnings("unchecked")
     public T peek() {
-        if (front == back && !atCapacity) {
+        if (count == 0) {
+            return null;
+        }
+        return (T) buffer[front];
+    }
+
+    /**
+     * Return the last value of the buffer without removing it from the buffer
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public T peekLast() {
+        if (count == 0) {
             return null;
         }
-        return buffer.get(front);
+        return (T) buffer[backIndex()];
+    }
+
+    /**
+     * The number of values in the buffer
+     *
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * The number of bytes the values in a budgeted buffer take up
+     *
+     * @return
+     */
+    public long totalBytes() {
+        return totalBytes;
     }
 
     /**
      * Clear the buffer
      */
     public void clear() {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = null;
+        }
         front = 0;
-        back = 0;
-        atCapacity = false;
+        count = 0;
+        totalBytes = 0;
+    }
+
+    /**
+     * Double the array, moving the values to the start of the new one
+     */
+    private void grow() {
+        final Object[] grown = new Object[buffer.length * 2];
+        for (int i = 0; i < count; i++) {
+            grown[i] = buffer[(front + i) % buffer.length];
+        }
+        buffer = grown;
+        front = 0;
+    }
+
+    /**
+     * The index of the last value
+     */
+    private int backIndex() {
+        return (front + count - 1) % buffer.length;
     }
 
     /**
      * Increment a pointer
      */
     private int incrementPointer(int pointerIndex) {
-        return (pointerIndex + 1) % size;
+        return (pointerIndex + 1) % buffer.length;
     }
 }
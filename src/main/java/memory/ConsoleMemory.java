@@ -1,5 +1,7 @@
 package memory;
 
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
 import nes.Cartridge;
 import io.Joypad;
 import operations.Utilities;
@@ -16,7 +18,9 @@ import operations.Utilities;
  * There are also two latches that are written to and read from that are technically separate: the ppuAddressLatch
  * and ppuScrollLatch.
  *
- * This class redirects reads/writes and offsets addresses.
+ * This class redirects reads/writes and offsets addresses. CPU reads and writes go through a page table with one
+ * entry per 256-byte page: pages backed by plain arrays (RAM and cartridge space) resolve to a single array index, and
+ * only pages with I/O registers on them take the slow path through IORegisterMemory.
  */
 public class ConsoleMemory extends MemoryMap {
     private CPURAM cpuram = new CPURAM();
@@ -28,6 +32,16 @@ public class ConsoleMemory extends MemoryMap {
     private Joypad joypadTwo;
 
     private static final int addressableMemorySize = 0x10000;
+    private static final int PAGE_SIZE = 0x100;
+    private static final int NUM_PAGES = addressableMemorySize / PAGE_SIZE;
+    private static final int CARTRIDGE_OFFSET = 0x4020;
+    private static final int FIRST_PRG_PAGE = 0x80;
+
+    // The array backing each page (null for pages that must go through readSlow()/writeSlow()), and the index in that
+    // array where the page starts.
+    private final byte[][] pageArrays = new byte[NUM_PAGES][];
+    private final int[] pageOffsets = new int[NUM_PAGES];
+    private PRGChangeListener prgChangeListener;
 
     public ConsoleMemory(final Cartridge cartridge, final Joypad joypadOne, final Joypad joypadTwo) {
         super(0);
@@ -35,18 +49,60 @@ public class ConsoleMemory extends MemoryMap {
         this.joypadOne = joypadOne;
         this.joypadTwo = joypadTwo;
         this.vram.setMirroringMode(cartridge.getMirroringMode());
+        mapCPURAMPages();
+        mapCartridgePages();
+    }
+
+    /**
+     * Point every page of [0x0000 -> 0x1FFF] at the 2 KiB of CPU RAM (including its mirrors).
+     */
+    private void mapCPURAMPages() {
+        for (int page = 0; page < cpuram.size() / PAGE_SIZE; page++) {
+            pageArrays[page] = cpuram.memory;
+            pageOffsets[page] = (page * PAGE_SIZE) % cpuram.memory.length;
+        }
+    }
+
+    /**
+     * Point every page that lies entirely in cartridge space at the array backing it. Page 0x40 shares space with the
+     * APU/joypad registers so it is left on the slow path. This must be called again whenever the cartridge switches
+     * banks.
+     */
+    public void mapCartridgePages() {
+        for (int page = (CARTRIDGE_OFFSET / PAGE_SIZE) + 1; page < NUM_PAGES; page++) {
+            final int cartridgeAddress = page * PAGE_SIZE - CARTRIDGE_OFFSET;
+            pageArrays[page] = this.cartridge.getCPUROMBacking(cartridgeAddress);
+            pageOffsets[page] = this.cartridge.getCPUROMBackingIndex(cartridgeAddress);
+        }
+        if (prgChangeListener != null) {
+            prgChangeListener.prgRemapped();
+        }
     }
 
     /**
-     * Read a byte from the CPU Memory Map. The provided address will be modded with 0x10000.
+     * Read a byte from the CPU Memory Map. The provided address will be wrapped to 16 bits.
      *
      * @param address
      * @return
      */
     @Override
     public byte read(int address) {
-        address = address % addressableMemorySize;
+        address &= (addressableMemorySize - 1);
+        final int page = address >> 8;
+        final byte[] pageArray = pageArrays[page];
+        if (pageArray != null) {
+            return pageArray[pageOffsets[page] + (address & (PAGE_SIZE - 1))];
+        }
+        return readSlow(address);
+    }
 
+    /**
+     * Read a byte by decoding the full address. Used for the pages that have I/O registers on them.
+     *
+     * @param address
+     * @return
+     */
+    private byte readSlow(int address) {
         // address: [0x0 -> 0xFFFF]
         if (address < cpuram.size()) {
             // address: [0x0 -> 0x1FFF]
@@ -56,7 +112,7 @@ public class ConsoleMemory extends MemoryMap {
             return ioRegisterMemory.read(address - 0x2000);
         }
         // address: [0x4020 -> 0xFFFF]
-        return this.cartridge.readCPUROM(address - 0x4020);
+        return this.cartridge.readCPUROM(address - CARTRIDGE_OFFSET);
     }
 
     /**
@@ -67,16 +123,59 @@ public class ConsoleMemory extends MemoryMap {
      */
     @Override
     public void write(int address, byte value) {
-        address %= addressableMemorySize;
+        address &= (addressableMemorySize - 1);
+        final int page = address >> 8;
+        final byte[] pageArray = pageArrays[page];
+        if (pageArray != null) {
+            pageArray[pageOffsets[page] + (address & (PAGE_SIZE - 1))] = value;
+            if (page >= FIRST_PRG_PAGE && prgChangeListener != null) {
+                notifyPRGWritten(page, address & (PAGE_SIZE - 1));
+            }
+        } else {
+            writeSlow(address, value);
+        }
+    }
+
+    /**
+     * Write a byte by decoding the full address. Used for the pages that have I/O registers on them.
+     *
+     * @param address
+     * @param value
+     */
+    private void writeSlow(int address, byte value) {
         if (address < cpuram.size()) {
             this.cpuram.write(address, value);
         } else if (address < 0x4020) {
             ioRegisterMemory.write(address - 0x2000, value);
         } else {
-            this.cartridge.writeCPUROM(address - 0x4020, value);
+            this.cartridge.writeCPUROM(address - CARTRIDGE_OFFSET, value);
+        }
+    }
+
+    /**
+     * Tell the listener about every address a PRG write shows up at: every PRG page backed by the same bytes as the
+     * page that was written.
+     *
+     * @param writtenPage
+     * @param offsetInPage
+     */
+    private void notifyPRGWritten(final int writtenPage, final int offsetInPage) {
+        for (int page = FIRST_PRG_PAGE; page < NUM_PAGES; page++) {
+            if (pageArrays[page] == pageArrays[writtenPage] && pageOffsets[page] == pageOffsets[writtenPage]) {
+                prgChangeListener.prgWritten(page * PAGE_SIZE + offsetInPage);
+            }
         }
     }
 
+    /**
+     * Register the CPU to be told about writes to PRG and bank switches
+     *
+     * @param prgChangeListener
+     */
+    public void setPRGChangeListener(final PRGChangeListener prgChangeListener) {
+        this.prgChangeListener = prgChangeListener;
+    }
+
     /**
      * Read a byte from the PPU main.java.memory space.
      *
@@ -120,6 +219,15 @@ public class ConsoleMemory extends MemoryMap {
         return this.sram.read(address);
     }
 
+    /**
+     * Register the PPU to be told about CPU accesses to its registers
+     *
+     * @param ppuRegisterListener
+     */
+    public void setPPURegisterListener(final PPURegisterListener ppuRegisterListener) {
+        this.ioRegisterMemory.setPPURegisterListener(ppuRegisterListener);
+    }
+
     /**
      * Gets bubbled back up to the CPU
      *
@@ -197,16 +305,54 @@ public class ConsoleMemory extends MemoryMap {
     }
 
     /**
-     * Fetch all relevant sprites for a line number and fill sprites. We return true if the sprites array is completely
-     * filled
+     * Fetch all relevant sprites for a line number into the slots of sprites. We return the number of sprites fetched.
      *
      * @param lineNumber
      * @return
      */
-    public boolean fetchSprites(final Sprite[] sprites, int lineNumber) {
+    public int fetchSprites(final Sprite[] sprites, int lineNumber) {
         return this.sram.fetchSprites(sprites, lineNumber);
     }
 
+    /**
+     * Write CPU RAM, VRAM, SPR-RAM, the I/O registers and the cartridge's RAM and banks into a save state.
+     *
+     * @param buffer
+     */
+    @Override
+    public void saveState(final ByteBuffer buffer) {
+        this.cpuram.saveState(buffer);
+        this.vram.saveState(buffer);
+        this.sram.saveState(buffer);
+        this.ioRegisterMemory.saveState(buffer);
+        this.cartridge.saveState(buffer);
+    }
+
+    /**
+     * Read back everything written by saveState(). If that changed any PRG, the listener has to drop what it decoded.
+     *
+     * @param buffer
+     */
+    @Override
+    public void loadState(final ByteBuffer buffer) {
+        this.cpuram.loadState(buffer);
+        this.vram.loadState(buffer);
+        this.sram.loadState(buffer);
+        this.ioRegisterMemory.loadState(buffer);
+        if (this.cartridge.loadState(buffer) && prgChangeListener != null) {
+            prgChangeListener.prgRemapped();
+        }
+    }
+
+    /**
+     * Add the contents of the CPU's internal RAM to a checksum.
+     *
+     * @param checksum
+     */
+    public void updateChecksum(final Checksum checksum) {
+        checksum.update(this.cpuram.memory, 0, this.cpuram.memory.length);
+    }
+
     public void writeToJoypadOne(byte value) {
         this.joypadOne.write(value);
     }
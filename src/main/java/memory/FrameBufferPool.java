@@ -0,0 +1,107 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * A fixed set of preallocated frame buffers shared between the PPU, which draws into one buffer at a time, and any
+ * number of consumers (the screen, network senders) that read finished frames.
+ *
+ * The producer calls startFrame() to get a cleared buffer to draw into and finishFrame() once it's complete, which
+ * makes it the latest frame. Consumers call acquireFrame() to hold on to the latest frame and must hand it back with
+ * releaseFrame() once they're done reading it. A held frame is never drawn into, and a finished frame nobody acquired
+ * is simply reused, so producing frames never allocates anything.
+ *
+ * If consumers hold every buffer but the latest frame, that frame is dropped and drawn over. If they hold that too, a
+ * consumer isn't releasing its frames, and startFrame() throws an IllegalStateException.
+ */
+public class FrameBufferPool {
+    private final int blankPixel;
+    private final int[][] frames;
+    private final int[] holds; // The number of consumers currently holding each frame
+
+    private int drawingIndex;
+    private int latestIndex;
+
+    /**
+     * @param numFrames The number of buffers to preallocate. Three covers the frame being drawn, the latest frame,
+     *                  and a frame still being read by consumers.
+     * @param frameSize The number of pixels in a frame
+     * @param blankPixel The value frames are cleared to before they're drawn
+     */
+    public FrameBufferPool(final int numFrames, final int frameSize, final int blankPixel) {
+        this.blankPixel = blankPixel;
+        this.frames = new int[numFrames][frameSize];
+        this.holds = new int[numFrames];
+        this.drawingIndex = -1;
+        this.latestIndex = -1;
+    }
+
+    /**
+     * Pick a buffer that's neither the latest frame nor held by a consumer, clear it, and start drawing into it.
+     *
+     * @return The buffer to draw the next frame into
+     * @throws IllegalStateException if consumers are holding every buffer
+     */
+    public synchronized int[] startFrame() {
+        drawingIndex = findFreeFrame();
+        final int[] frame = frames[drawingIndex];
+        Arrays.fill(frame, blankPixel);
+        return frame;
+    }
+
+    /**
+     * The buffer we've been drawing into is complete, make it the latest frame.
+     */
+    public synchronized void finishFrame() {
+        latestIndex = drawingIndex;
+    }
+
+    /**
+     * Hold on to the latest finished frame. It won't be drawn into again until it's given back with releaseFrame().
+     *
+     * @return The latest frame or null if no frame has been finished yet
+     */
+    public synchronized int[] acquireFrame() {
+        if (latestIndex < 0) {
+            return null;
+        }
+        holds[latestIndex]++;
+        return frames[latestIndex];
+    }
+
+    /**
+     * Give back a frame from acquireFrame().
+     *
+     * @param frame
+     */
+    public synchronized void releaseFrame(final int[] frame) {
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i] == frame) {
+                if (holds[i] > 0) {
+                    holds[i]--;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find a buffer we can draw into. If consumers are holding every other buffer we drop the latest frame and draw
+     * over that, so there's no latest frame until this one is finished.
+     */
+    private int findFreeFrame() {
+        for (int i = 0; i < frames.length; i++) {
+            if (i != latestIndex && holds[i] == 0) {
+                return i;
+            }
+        }
+
+        if (latestIndex >= 0 && holds[latestIndex] == 0) {
+            final int droppedIndex = latestIndex;
+            latestIndex = -1;
+            return droppedIndex;
+        }
+        throw new IllegalStateException(String.format(
+            "All %d frame buffers are held, is a consumer not calling releaseFrame()?", frames.length));
+    }
+}
@@ -1,6 +1,7 @@
 package memory;
 
 
+import java.nio.ByteBuffer;
 import operations.Utilities;
 
 public class IORegisterMemory extends MemoryMap {
@@ -9,14 +10,14 @@ public class IORegisterMemory extends MemoryMap {
     private static final int SECOND_SET_IO_REGISTERS = 0x2000;
 
     // PPU register addresses (in first set of registers)
-    private static final int PPU_CTRL = 0x0000;
-    private static final int PPU_MASK = 0x0001;
-    private static final int PPU_STATUS = 0x0002;
-    private static final int SPR_ADDRESS = 0x0003;
-    private static final int SPR_DATA = 0x0004;
-    private static final int PPU_SCROLL = 0x0005;
-    private static final int PPU_ADDRESS = 0x0006;
-    private static final int PPU_DATA = 0x0007;
+    public static final int PPU_CTRL = 0x0000;
+    public static final int PPU_MASK = 0x0001;
+    public static final int PPU_STATUS = 0x0002;
+    public static final int SPR_ADDRESS = 0x0003;
+    public static final int SPR_DATA = 0x0004;
+    public static final int PPU_SCROLL = 0x0005;
+    public static final int PPU_ADDRESS = 0x0006;
+    public static final int PPU_DATA = 0x0007;
 
     public int vramAddress; // set via PPU_ADDRESS
     public byte fineXScroll;
@@ -26,6 +27,7 @@ public class IORegisterMemory extends MemoryMap {
     private boolean firstWrite;
 
     private ConsoleMemory consoleMemory; // reference to console main.java.memory
+    private PPURegisterListener ppuRegisterListener;
 
     private boolean spriteOverflow;
     private boolean spriteZeroHit;
@@ -65,6 +67,9 @@ public class IORegisterMemory extends MemoryMap {
         assert(address >= 0x0 && address < 0x2020);
         if (address < SECOND_SET_IO_REGISTERS) {
             address %= numPpuRegisters;
+            if (ppuRegisterListener != null) {
+                ppuRegisterListener.beforeRegisterRead(address);
+            }
             // address: [0x0 -> 0x08]
             switch (address) {
                 case PPU_CTRL:
@@ -113,6 +118,9 @@ public class IORegisterMemory extends MemoryMap {
         assert(address >= 0x0 && address < 0x2020);
         if (address < SECOND_SET_IO_REGISTERS) {
             address %= numPpuRegisters;
+            if (ppuRegisterListener != null) {
+                ppuRegisterListener.beforeRegisterWrite(address);
+            }
             switch (address) {
                 case PPU_CTRL:
                     writeToControl(value);
@@ -141,6 +149,9 @@ public class IORegisterMemory extends MemoryMap {
                 default:
                     break;
             }
+            if (ppuRegisterListener != null) {
+                ppuRegisterListener.afterRegisterWrite(address, value);
+            }
         } else {
             switch (address) {
                 case SPR_DMA:
@@ -159,6 +170,52 @@ public class IORegisterMemory extends MemoryMap {
         }
     }
 
+    /**
+     * Register the listener (the PPU) that is told about accesses to the PPU registers
+     *
+     * @param ppuRegisterListener
+     */
+    public void setPPURegisterListener(final PPURegisterListener ppuRegisterListener) {
+        this.ppuRegisterListener = ppuRegisterListener;
+    }
+
+    /**
+     * Write the registers and the latches behind them into a save state.
+     *
+     * @param buffer
+     */
+    @Override
+    public void saveState(final ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(vramAddress);
+        buffer.putInt(tempVramAddress);
+        buffer.put(fineXScroll);
+        buffer.put(ppuBufferData);
+        buffer.put(lastWriteValue);
+        buffer.put(Utilities.toByte(firstWrite, spriteOverflow, spriteZeroHit, vblank, dmaFlag));
+    }
+
+    /**
+     * Read back the registers and latches written by saveState().
+     *
+     * @param buffer
+     */
+    @Override
+    public void loadState(final ByteBuffer buffer) {
+        super.loadState(buffer);
+        vramAddress = buffer.getInt();
+        tempVramAddress = buffer.getInt();
+        fineXScroll = buffer.get();
+        ppuBufferData = buffer.get();
+        lastWriteValue = buffer.get();
+        final byte flags = buffer.get();
+        firstWrite = Utilities.bitAt(flags, 0);
+        spriteOverflow = Utilities.bitAt(flags, 1);
+        spriteZeroHit = Utilities.bitAt(flags, 2);
+        vblank = Utilities.bitAt(flags, 3);
+        dmaFlag = Utilities.bitAt(flags, 4);
+    }
+
     /**
      * ConsoleMemory uses this to reset the DMA flag here after a DMA write has been triggered once
      */
@@ -1,5 +1,7 @@
 package memory;
 
+import java.nio.ByteBuffer;
+
 /**
  * This abstract class can read/write to contiguous blocks of main.java.memory.
  */
@@ -58,6 +60,24 @@ public class MemoryMap {
         }
     }
 
+    /**
+     * Write the contents of the main.java.memory map into a save state.
+     *
+     * @param buffer
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.put(this.memory);
+    }
+
+    /**
+     * Read back the contents written by saveState().
+     *
+     * @param buffer
+     */
+    public void loadState(final ByteBuffer buffer) {
+        buffer.get(this.memory);
+    }
+
     /**
      * Returns the size of the main.java.memory map in number of bytes
      *
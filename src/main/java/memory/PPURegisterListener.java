@@ -0,0 +1,30 @@
+package memory;
+
+/**
+ * Lets the PPU hear about CPU accesses to its registers ($2000 - $2007) before (and for writes, after) they take
+ * effect. The register is given as its index in the first set of I/O registers (0 for PPU_CTRL through 7 for
+ * PPU_DATA).
+ */
+public interface PPURegisterListener {
+    /**
+     * Called before the CPU reads a PPU register
+     *
+     * @param register
+     */
+    void beforeRegisterRead(int register);
+
+    /**
+     * Called before the CPU writes a PPU register
+     *
+     * @param register
+     */
+    void beforeRegisterWrite(int register);
+
+    /**
+     * Called once a write to a PPU register has been applied
+     *
+     * @param register
+     * @param value
+     */
+    void afterRegisterWrite(int register, byte value);
+}
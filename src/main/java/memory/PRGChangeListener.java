@@ -0,0 +1,20 @@
+package memory;
+
+/**
+ * Lets the CPU hear about changes to the cartridge code in [0x8000 -> 0xFFFF], so it can drop anything it decoded from
+ * the old code.
+ */
+public interface PRGChangeListener {
+    /**
+     * Called after the CPU writes a byte of PRG. Since PRG banks can be mirrored, this is called once for every address
+     * the byte shows up at.
+     *
+     * @param address
+     */
+    void prgWritten(int address);
+
+    /**
+     * Called after the cartridge's banks are mapped to different addresses
+     */
+    void prgRemapped();
+}
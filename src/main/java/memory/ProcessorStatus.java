@@ -1,33 +1,123 @@
 package memory;
 
+import operations.Utilities;
+
+/**
+ * The P register. Nearly every instruction sets the zero and negative flags from its result, so rather than setting
+ * the two bits each time we just keep the last result and work the flags out from it when something asks for them (a
+ * branch, PHP, BRK, an interrupt, or a save state). The carry and overflow flags are kept separately too, so setting
+ * them doesn't touch the other bits. readAsByte() puts them all back together.
+ */
 public class ProcessorStatus extends EightBitRegister {
+    private static final int CARRY_BIT = 0x01;
+    private static final int ZERO_BIT = 0x02;
+    private static final int OVERFLOW_BIT = 0x40;
+    private static final int NEGATIVE_BIT = 0x80;
+
+    // Z is set if the low byte is 0, and N if bit 7 or 8 is. Results are stored sign extended, so this is just the
+    // result, and bit 8 lets Z and N both be set when something sets them on their own.
+    private int zeroNegativeResult;
+    private boolean carry;
+    private boolean overflow;
+
+    public ProcessorStatus() {
+        writeByte((byte) 0);
+    }
+
+    @Override
+    public int read() {
+        return Utilities.toUnsignedValue(readAsByte());
+    }
+
+    @Override
+    public byte readAsByte() {
+        int value = this.data & ~(CARRY_BIT | ZERO_BIT | OVERFLOW_BIT | NEGATIVE_BIT);
+        if (carry) {
+            value |= CARRY_BIT;
+        }
+        if (zeroFlag()) {
+            value |= ZERO_BIT;
+        }
+        if (overflow) {
+            value |= OVERFLOW_BIT;
+        }
+        if (negativeFlag()) {
+            value |= NEGATIVE_BIT;
+        }
+        return (byte) value;
+    }
+
+    @Override
+    public void write(int value) {
+        writeByte((byte) value);
+    }
+
+    @Override
+    public void writeByte(byte value) {
+        this.data = value;
+        this.carry = (value & CARRY_BIT) != 0;
+        this.overflow = (value & OVERFLOW_BIT) != 0;
+        setZeroAndNegativeFlags((value & ZERO_BIT) != 0, (value & NEGATIVE_BIT) != 0);
+    }
+
+    @Override
+    public void andByte(byte b) {
+        writeByte((byte) (readAsByte() & b));
+    }
+
+    @Override
+    public void orByte(byte b) {
+        writeByte((byte) (readAsByte() | b));
+    }
+
+    @Override
+    public void xorByte(byte b) {
+        writeByte((byte) (readAsByte() ^ b));
+    }
 
     public boolean getStatusBitAt(int position) {
-        return ((this.data >> position) & 1) == 0x1;
+        return ((readAsByte() >> position) & 1) == 0x1;
+    }
+
+    /**
+     * Set the zero and negative flags from the result of an operation
+     *
+     * @param result
+     */
+    public void setZeroAndNegativeFlags(byte result) {
+        this.zeroNegativeResult = result;
+    }
+
+    private void setZeroAndNegativeFlags(boolean zero, boolean negative) {
+        if (zero) {
+            this.zeroNegativeResult = negative ? 0x100 : 0;
+        } else {
+            this.zeroNegativeResult = negative ? NEGATIVE_BIT : 1;
+        }
     }
 
     public void setCarryFlag() {
-        this.data = (byte) (this.data | (0x01 << 0));
+        this.carry = true;
     }
 
     public void clearCarryFlag() {
-        this.data = (byte) (this.data & ~(0x01 << 0));
+        this.carry = false;
     }
 
     public boolean carryFlag() {
-        return getStatusBitAt(0);
+        return carry;
     }
 
     public void setZeroFlag() {
-        this.data = (byte) (this.data | (0x01 << 1));
+        setZeroAndNegativeFlags(true, negativeFlag());
     }
 
     public void clearZeroFlag() {
-        this.data = (byte) (this.data & ~(0x01 << 1));
+        setZeroAndNegativeFlags(false, negativeFlag());
     }
 
     public boolean zeroFlag() {
-        return getStatusBitAt(1);
+        return (zeroNegativeResult & 0xFF) == 0;
     }
 
     public void setInterruptDisableFlag() {
@@ -39,7 +129,7 @@ public class ProcessorStatus extends EightBitRegister {
     }
 
     public boolean interruptDisableFlag() {
-        return getStatusBitAt(2);
+        return ((this.data >> 2) & 1) == 0x1;
     }
 
     public void setDecimalModeFlag() {
@@ -51,7 +141,7 @@ public class ProcessorStatus extends EightBitRegister {
     }
 
     public boolean decimalModeFlag() {
-        return getStatusBitAt(3);
+        return ((this.data >> 3) & 1) == 0x1;
     }
 
     public void setBreakFlag() {
@@ -63,36 +153,36 @@ public class ProcessorStatus extends EightBitRegister {
     }
 
     public boolean breakFlag() {
-        return getStatusBitAt(4);
+        return ((this.data >> 4) & 1) == 0x1;
     }
 
     public void setOverflowFlag() {
-        this.data = (byte) (this.data | (0x01 << 6));
+        this.overflow = true;
     }
 
     public void clearOverflowFlag() {
-        this.data = (byte) (this.data & ~(0x01 << 6));
+        this.overflow = false;
     }
 
     public boolean overflowFlag() {
-        return getStatusBitAt(6);
+        return overflow;
     }
 
     public void setNegativeFlag() {
-        this.data = (byte) (this.data | (0x01 << 7));
+        setZeroAndNegativeFlags(zeroFlag(), true);
     }
 
     public void clearNegativeFlag() {
-        this.data = (byte) (this.data & ~(0x01 << 7));
+        setZeroAndNegativeFlags(zeroFlag(), false);
     }
 
     public boolean negativeFlag() {
-        return getStatusBitAt(7);
+        return (zeroNegativeResult & (NEGATIVE_BIT | 0x100)) != 0;
     }
 
     @Override
     public String toString() {
-        String s = String.format("%8s", Integer.toBinaryString(this.data)).replace(" ", "0");
+        String s = String.format("%8s", Integer.toBinaryString(readAsByte())).replace(" ", "0");
         return s.substring(s.length() - 8, s.length());
     }
 }
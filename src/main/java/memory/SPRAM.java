@@ -18,7 +18,8 @@ public class SPRAM extends MemoryMap {
     }
 
     /**
-     * Fetch all relevant sprites for a line number. We terminate early if our buffer is saturated.
+     * Fetch all relevant sprites for a line number into the slots of buffer. We terminate early if our buffer is
+     * saturated.
      *
      * For every four bytes:
      * Byte 0: y position of top side - 1 (so we offset by +1)
@@ -26,18 +27,13 @@ public class SPRAM extends MemoryMap {
      * Byte 2: attributes
      * Byte 3: x position of left side
      *
-     * We return true if we fetched buffer.length sprites
+     * We return the number of sprites fetched, only the first that many slots are valid
      *
      * @param lineNumber
      * @return
      */
-    public boolean fetchSprites(final Sprite[] buffer, int lineNumber) {
+    public int fetchSprites(final Sprite[] buffer, int lineNumber) {
         int numSprites = 0;
-        for (int i = 0; i < buffer.length; i++) {
-            // Clear the buffer before we fetch new sprites
-            buffer[i] = null;
-        }
-
         for (int i = 0; i < size() && numSprites < buffer.length; i += 4) {
             int y = Utilities.toUnsignedValue(this.read(i)) + 1;
             int tileIndex = Utilities.toUnsignedValue(this.read(i + 1));
@@ -45,15 +41,9 @@ public class SPRAM extends MemoryMap {
             int x = Utilities.toUnsignedValue(this.read(i + 3));
 
             if (Utilities.inRange(lineNumber, y, y + 7)) {
-                buffer[numSprites++] = new Sprite.Builder()
-                    .setX(x)
-                    .setY(y)
-                    .setPriority(i / 4)
-                    .setAttributes(attributes)
-                    .setPatternTableIndex(tileIndex)
-                    .build();
+                buffer[numSprites++].set(i / 4, tileIndex, y, x, attributes);
             }
         }
-        return numSprites == buffer.length;
+        return numSprites;
     }
 }
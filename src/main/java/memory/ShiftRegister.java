@@ -1,5 +1,7 @@
 package memory;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class stores two eight-pixel tile rows to render.
  */
@@ -28,6 +30,36 @@ public class ShiftRegister {
         return ((currentAttribute & 0x03) << 2) | (bgColorHigh << 1) | (bgColorLow);
     }
 
+    /**
+     * Return the low pattern byte of one of the two loaded tiles (0 is the tile being shifted out, 1 is the next).
+     *
+     * @param tile
+     * @return
+     */
+    public byte getLowBGTile(final int tile) {
+        return (byte) (tile == 0 ? this.lowBGTiles >> 8 : this.lowBGTiles);
+    }
+
+    /**
+     * Return the high pattern byte of one of the two loaded tiles (0 is the tile being shifted out, 1 is the next).
+     *
+     * @param tile
+     * @return
+     */
+    public byte getHighBGTile(final int tile) {
+        return (byte) (tile == 0 ? this.highBGTiles >> 8 : this.highBGTiles);
+    }
+
+    /**
+     * Return the attribute of one of the two loaded tiles (0 is the tile being shifted out, 1 is the next).
+     *
+     * @param tile
+     * @return
+     */
+    public byte getAttributeTile(final int tile) {
+        return tile == 0 ? this.currentAttribute : this.loadedAttribute;
+    }
+
     /**
      * Shift the background tiles to the left by one. Called by the PPU after a pixel is rendered.
      */
@@ -61,4 +93,24 @@ public class ShiftRegister {
         currentAttribute = loadedAttribute;
         loadedAttribute = attribute;
     }
+
+    /**
+     * Write both loaded tiles and their attributes into a save state.
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.putInt(lowBGTiles);
+        buffer.putInt(highBGTiles);
+        buffer.put(loadedAttribute);
+        buffer.put(currentAttribute);
+    }
+
+    /**
+     * Read back what saveState() wrote.
+     */
+    public void loadState(final ByteBuffer buffer) {
+        lowBGTiles = buffer.getInt();
+        highBGTiles = buffer.getInt();
+        loadedAttribute = buffer.get();
+        currentAttribute = buffer.get();
+    }
 }
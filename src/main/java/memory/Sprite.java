@@ -1,18 +1,27 @@
 package memory;
 
+import java.nio.ByteBuffer;
 import operations.Utilities;
 
 /**
- * Immutable structure to represent a sprite fetched from SPR-RAM. Use the Builder class to build sprites.
+ * A slot for one of the (up to eight) sprites on a scanline. The PPU preallocates the slots once and SPRAM refills
+ * them during sprite evaluation, and the PPU then loads the row of the sprite's pattern that falls on the line.
  */
 public final class Sprite {
-    final public int priority; // priority in SPR-RAM (lower index == higher priority)
-    final public int patternTableIndex;
-    final public int y; // y-coordinate of top part of sprite on the main.java.screen.
-    final public int x; // x-coordinate of left part of the sprite on the main.java.screen.
-    final public byte attributes;
+    public int priority; // priority in SPR-RAM (lower index == higher priority)
+    public int patternTableIndex;
+    public int y; // y-coordinate of top part of sprite on the main.java.screen.
+    public int x; // x-coordinate of left part of the sprite on the main.java.screen.
+    public byte attributes;
 
-    private Sprite(int priority, int patternTableIndex, int y, int x, byte attributes) {
+    // The row of the pattern on the current line with the leftmost pixel in bit 7, horizontal flipping already applied
+    private int patternLow;
+    private int patternHigh;
+
+    /**
+     * Fill this slot with a sprite from SPR-RAM.
+     */
+    void set(int priority, int patternTableIndex, int y, int x, byte attributes) {
         this.priority = priority;
         this.patternTableIndex = patternTableIndex;
         this.y = y;
@@ -20,6 +29,59 @@ public final class Sprite {
         this.attributes = attributes;
     }
 
+    /**
+     * Load the two pattern bytes of the row that falls on the current line, as they're stored in the pattern table.
+     *
+     * @param low
+     * @param high
+     */
+    public void setPattern(byte low, byte high) {
+        if (flippedHorizontally()) {
+            patternLow = Integer.reverse(low) >>> 24;
+            patternHigh = Integer.reverse(high) >>> 24;
+        } else {
+            patternLow = low & 0xFF;
+            patternHigh = high & 0xFF;
+        }
+    }
+
+    /**
+     * Returns the 2-bit pattern value of this sprite at a screen x-coordinate, which has to be in [x, x + 7].
+     *
+     * @param screenX
+     * @return
+     */
+    public int getPatternPixel(int screenX) {
+        final int shift = 7 - (screenX - this.x);
+        return ((patternHigh >> shift) & 0x01) << 1 | ((patternLow >> shift) & 0x01);
+    }
+
+    /**
+     * Write the slot, including the pattern row loaded for the current line into a save state.
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.putInt(priority);
+        buffer.putInt(patternTableIndex);
+        buffer.putInt(y);
+        buffer.putInt(x);
+        buffer.put(attributes);
+        buffer.put((byte) patternLow);
+        buffer.put((byte) patternHigh);
+    }
+
+    /**
+     * Read back what saveState() wrote.
+     */
+    public void loadState(final ByteBuffer buffer) {
+        priority = buffer.getInt();
+        patternTableIndex = buffer.getInt();
+        y = buffer.getInt();
+        x = buffer.getInt();
+        attributes = buffer.get();
+        patternLow = buffer.get() & 0xFF;
+        patternHigh = buffer.get() & 0xFF;
+    }
+
     public boolean behindBackground() {
         return Utilities.bitAt(this.attributes, 5);
     }
@@ -31,41 +93,4 @@ public final class Sprite {
     public boolean flippedVertically() {
         return Utilities.bitAt(this.attributes, 7);
     }
-
-    public static class Builder {
-        private int priority;
-        private int patternTableIndex;
-        private int y;
-        private int x;
-        private byte attributes;
-
-        public Builder setPriority(int priority) {
-            this.priority = priority;
-            return this;
-        }
-
-        public Builder setPatternTableIndex(int patternTableIndex) {
-            this.patternTableIndex = patternTableIndex;
-            return this;
-        }
-
-        public Builder setY(int y) {
-            this.y = y;
-            return this;
-        }
-
-        public Builder setX(int x) {
-            this.x = x;
-            return this;
-        }
-
-        public Builder setAttributes(byte attributes) {
-            this.attributes = attributes;
-            return this;
-        }
-
-        public Sprite build() {
-            return new Sprite(priority, patternTableIndex, y, x, attributes);
-        }
-    }
 }
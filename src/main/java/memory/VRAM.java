@@ -1,5 +1,6 @@
 package memory;
 
+import java.nio.ByteBuffer;
 import nes.MirroringMode;
 
 /**
@@ -44,6 +45,18 @@ public class VRAM extends MemoryMap {
     public void setMirroringMode(MirroringMode mirroringMode) {
         this.nameTableMemory.setMirroringMode(mirroringMode);
     }
+
+    @Override
+    public void saveState(final ByteBuffer buffer) {
+        nameTableMemory.saveState(buffer);
+        paletteMemory.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(final ByteBuffer buffer) {
+        nameTableMemory.loadState(buffer);
+        paletteMemory.loadState(buffer);
+    }
 }
 
 /**
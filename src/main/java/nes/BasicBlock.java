@@ -0,0 +1,40 @@
+package nes;
+
+import operations.Operation;
+
+/**
+ * A straight run of decoded cartridge instructions, where only the last one can jump or branch, so the Scheduler can
+ * run them back to back without fetching, decoding, or checking for interrupts in between (see Scheduler.step()).
+ *
+ * Blocks are only built for code that has run a few times (see InstructionCache), and stop being valid as soon as any
+ * of their bytes is written or the banks are switched. The ones that keep running get compiled (see BlockCompiler).
+ */
+final class BasicBlock {
+    static final int MAX_INSTRUCTIONS = 32;
+    static final int MAX_BYTES = MAX_INSTRUCTIONS * 3;
+    private static final int MAX_EXTRA_CYCLES = 2; // A taken branch to another page, or an indexed read across pages
+
+    final int startAddress;
+    final int endAddress; // Just past the last instruction
+    final Operation[] operations;
+    final int[] operands;
+    final int maxCycles; // The most cycles running every instruction could take
+    boolean valid;
+    int runCount; // Times the Scheduler has run it, up to BlockCompiler.COMPILE_RUN_COUNT
+    CompiledBlock compiled; // Null until it's compiled, or if it couldn't be
+
+    BasicBlock(final int startAddress, final Operation[] operations, final int[] operands) {
+        this.startAddress = startAddress;
+        this.operations = operations;
+        this.operands = operands;
+        int address = startAddress;
+        int cycles = 0;
+        for (final Operation operation : operations) {
+            address += operation.numBytes;
+            cycles += operation.cycles + MAX_EXTRA_CYCLES;
+        }
+        this.endAddress = address;
+        this.maxCycles = cycles;
+        this.valid = true;
+    }
+}
@@ -0,0 +1,363 @@
+package nes;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import operations.Operation;
+
+/**
+ * Compiles the hottest BasicBlocks (run COMPILE_RUN_COUNT times) into JVM classes with ASM, so HotSpot can compile the
+ * block as one piece of straight-line code. Each generated class extends CompiledBlock, and its run() method:
+ *
+ * - Has each instruction's operand as a constant.
+ * - Does the simplest instructions (register transfers and increments, immediate loads, flag changes, NOP) itself.
+ * - Calls the block's own Operation for everything else. Every call site only ever sees one Operation, so HotSpot can
+ *   inline it, which it can't do from the interpreter loop in Scheduler.runBlock().
+ *
+ * Every class gets its own class loader, so it's unloaded once its block is dropped. If a class can't be generated
+ * (say ASM isn't on the classpath), we stop compiling and blocks keep running their Operations.
+ */
+final class BlockCompiler {
+    static final int COMPILE_RUN_COUNT = 64;
+
+    private static final String CLASS_NAME_PREFIX = "nes/compiled/Block";
+    private static final String COMPILED_BLOCK = "nes/CompiledBlock";
+    private static final String CPU_CLASS = "nes/CPU";
+    private static final String OPERATION = "operations/Operation";
+    private static final String EIGHT_BIT_REGISTER = "memory/EightBitRegister";
+    private static final String PROCESSOR_STATUS = "memory/ProcessorStatus";
+    private static final String SIXTEEN_BIT_REGISTER = "memory/SixteenBitRegister";
+
+    private final Scheduler scheduler;
+    private boolean disabled;
+
+    BlockCompiler(final Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Compile a block.
+     *
+     * @param block
+     * @return The compiled block, or null if it couldn't be compiled
+     */
+    CompiledBlock compile(final BasicBlock block) {
+        if (disabled) {
+            return null;
+        }
+        try {
+            final String className = CLASS_NAME_PREFIX + Integer.toHexString(block.startAddress).toUpperCase();
+            final byte[] classFile = ClassGenerator.generate(className, block);
+            final Class<?> blockClass = new BlockClassLoader().define(className.replace('/', '.'), classFile);
+            final CompiledBlock compiledBlock =
+                (CompiledBlock) blockClass.getConstructor(Operation[].class).newInstance((Object) block.operations);
+            compiledBlock.attach(scheduler, block);
+            return compiledBlock;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Couldn't compile code to JVM classes, it'll be interpreted from now on: " + e);
+            disabled = true;
+            return null;
+        }
+    }
+
+    private static final class BlockClassLoader extends ClassLoader {
+        BlockClassLoader() {
+            super(BlockCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    /**
+     * Writes the class files. It's kept apart so that ASM is only loaded once we compile something.
+     */
+    private static final class ClassGenerator {
+        private static final int THIS = 0;
+        private static final int CPU_ARGUMENT = 1;
+        private static final int CYCLES = 2;
+
+        static byte[] generate(final String className, final BasicBlock block) {
+            final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            classWriter.visit(
+                Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                COMPILED_BLOCK, null);
+
+            // A field for every operation we call rather than do ourselves
+            for (int i = 0; i < block.operations.length; i++) {
+                if (!canInline(block.operations[i])) {
+                    classWriter.visitField(
+                        Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, operationField(i), "L" + OPERATION + ";", null, null)
+                        .visitEnd();
+                }
+            }
+            writeConstructor(classWriter, className, block);
+            writeRun(classWriter, className, block);
+            classWriter.visitEnd();
+            return classWriter.toByteArray();
+        }
+
+        private static void writeConstructor(
+                final ClassWriter classWriter, final String className, final BasicBlock block) {
+            final MethodVisitor method =
+                classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([L" + OPERATION + ";)V", null, null);
+            method.visitCode();
+            method.visitVarInsn(Opcodes.ALOAD, THIS);
+            method.visitMethodInsn(Opcodes.INVOKESPECIAL, COMPILED_BLOCK, "<init>", "()V", false);
+            for (int i = 0; i < block.operations.length; i++) {
+                if (!canInline(block.operations[i])) {
+                    method.visitVarInsn(Opcodes.ALOAD, THIS);
+                    method.visitVarInsn(Opcodes.ALOAD, 1);
+                    pushInt(method, i);
+                    method.visitInsn(Opcodes.AALOAD);
+                    method.visitFieldInsn(Opcodes.PUTFIELD, className, operationField(i), "L" + OPERATION + ";");
+                }
+            }
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        /**
+         * The same as Scheduler.runBlock(), unrolled.
+         */
+        private static void writeRun(final ClassWriter classWriter, final String className, final BasicBlock block) {
+            final MethodVisitor method =
+                classWriter.visitMethod(Opcodes.ACC_PROTECTED, "run", "(L" + CPU_CLASS + ";)I", null, null);
+            method.visitCode();
+            final Label end = new Label();
+            pushInt(method, 0);
+            method.visitVarInsn(Opcodes.ISTORE, CYCLES);
+
+            for (int i = 0; i < block.operations.length; i++) {
+                final Operation operation = block.operations[i];
+
+                // cycles += startInstruction(cpu, operand)
+                method.visitVarInsn(Opcodes.ILOAD, CYCLES);
+                method.visitVarInsn(Opcodes.ALOAD, THIS);
+                method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+                pushInt(method, block.operands[i]);
+                method.visitMethodInsn(
+                    Opcodes.INVOKEVIRTUAL, COMPILED_BLOCK, "startInstruction", "(L" + CPU_CLASS + ";I)I", false);
+                method.visitInsn(Opcodes.IADD);
+                method.visitVarInsn(Opcodes.ISTORE, CYCLES);
+
+                if (canInline(operation)) {
+                    writeInline(method, operation, block.operands[i]);
+                } else {
+                    method.visitVarInsn(Opcodes.ALOAD, THIS);
+                    method.visitFieldInsn(Opcodes.GETFIELD, className, operationField(i), "L" + OPERATION + ";");
+                    method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+                    method.visitMethodInsn(
+                        Opcodes.INVOKEVIRTUAL, OPERATION, "execute", "(L" + CPU_CLASS + ";)V", false);
+                }
+
+                // Nothing after the last instruction to skip
+                if (i < block.operations.length - 1) {
+                    method.visitVarInsn(Opcodes.ALOAD, THIS);
+                    method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+                    method.visitMethodInsn(
+                        Opcodes.INVOKEVIRTUAL, COMPILED_BLOCK, "stopped", "(L" + CPU_CLASS + ";)Z", false);
+                    method.visitJumpInsn(Opcodes.IFNE, end);
+                }
+            }
+
+            method.visitLabel(end);
+            method.visitVarInsn(Opcodes.ILOAD, CYCLES);
+            method.visitInsn(Opcodes.IRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        /**
+         * Whether we do an operation in the generated code rather than calling it. Keep this in step with
+         * writeInline().
+         */
+        private static boolean canInline(final Operation operation) {
+            switch (operation.opcode & 0xFF) {
+                case 0xEA: // NOP
+                case 0x18: // CLC
+                case 0x38: // SEC
+                case 0x58: // CLI
+                case 0x78: // SEI
+                case 0xB8: // CLV
+                case 0xD8: // CLD
+                case 0xF8: // SED
+                case 0xAA: // TAX
+                case 0xA8: // TAY
+                case 0x8A: // TXA
+                case 0x98: // TYA
+                case 0xE8: // INX
+                case 0xC8: // INY
+                case 0xCA: // DEX
+                case 0x88: // DEY
+                case 0xA9: // LDA #
+                case 0xA2: // LDX #
+                case 0xA0: // LDY #
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Do what the operation's execute() does.
+         */
+        private static void writeInline(final MethodVisitor method, final Operation operation, final int operand) {
+            switch (operation.opcode & 0xFF) {
+                case 0x18:
+                    callOnStatus(method, "clearCarryFlag");
+                    break;
+                case 0x38:
+                    callOnStatus(method, "setCarryFlag");
+                    break;
+                case 0x58:
+                    callOnStatus(method, "clearInterruptDisableFlag");
+                    break;
+                case 0x78:
+                    callOnStatus(method, "setInterruptDisableFlag");
+                    break;
+                case 0xB8:
+                    callOnStatus(method, "clearOverflowFlag");
+                    break;
+                case 0xD8:
+                    callOnStatus(method, "clearDecimalModeFlag");
+                    break;
+                case 0xF8:
+                    callOnStatus(method, "setDecimalModeFlag");
+                    break;
+                case 0xAA:
+                    writeTransfer(method, "A", "X");
+                    break;
+                case 0xA8:
+                    writeTransfer(method, "A", "Y");
+                    break;
+                case 0x8A:
+                    writeTransfer(method, "X", "A");
+                    break;
+                case 0x98:
+                    writeTransfer(method, "Y", "A");
+                    break;
+                case 0xE8:
+                    writeIncrement(method, "X", 1);
+                    break;
+                case 0xC8:
+                    writeIncrement(method, "Y", 1);
+                    break;
+                case 0xCA:
+                    writeIncrement(method, "X", -1);
+                    break;
+                case 0x88:
+                    writeIncrement(method, "Y", -1);
+                    break;
+                case 0xA9:
+                    writeLoadImmediate(method, "A", (byte) operand);
+                    break;
+                case 0xA2:
+                    writeLoadImmediate(method, "X", (byte) operand);
+                    break;
+                case 0xA0:
+                    writeLoadImmediate(method, "Y", (byte) operand);
+                    break;
+                default: // NOP
+                    break;
+            }
+
+            // cpu.PC.incrementBy(numBytes)
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, "PC", "L" + SIXTEEN_BIT_REGISTER + ";");
+            pushInt(method, operation.numBytes);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, SIXTEEN_BIT_REGISTER, "incrementBy", "(I)V", false);
+
+            // cpu.cycleCount += cycles
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitInsn(Opcodes.DUP);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, "cycleCount", "J");
+            method.visitLdcInsn((long) operation.cycles);
+            method.visitInsn(Opcodes.LADD);
+            method.visitFieldInsn(Opcodes.PUTFIELD, CPU_CLASS, "cycleCount", "J");
+        }
+
+        private static void callOnStatus(final MethodVisitor method, final String methodName) {
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, "P", "L" + PROCESSOR_STATUS + ";");
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROCESSOR_STATUS, methodName, "()V", false);
+        }
+
+        /**
+         * to.writeByte(from.readAsByte()), then set Z and N from it.
+         */
+        private static void writeTransfer(final MethodVisitor method, final String from, final String to) {
+            loadRegister(method, to);
+            loadRegister(method, from);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EIGHT_BIT_REGISTER, "readAsByte", "()B", false);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EIGHT_BIT_REGISTER, "writeByte", "(B)V", false);
+            writeZeroAndNegativeFlagsFrom(method, to);
+        }
+
+        /**
+         * register.addByte(amount, false), then set Z and N from it.
+         */
+        private static void writeIncrement(final MethodVisitor method, final String register, final int amount) {
+            loadRegister(method, register);
+            pushInt(method, amount);
+            pushInt(method, 0);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EIGHT_BIT_REGISTER, "addByte", "(BZ)Z", false);
+            method.visitInsn(Opcodes.POP);
+            writeZeroAndNegativeFlagsFrom(method, register);
+        }
+
+        /**
+         * As AddressingModeUtilities.getValue() does for an immediate operand, then register.writeByte(value) and set Z
+         * and N from the value, which we know already.
+         */
+        private static void writeLoadImmediate(final MethodVisitor method, final String register, final byte value) {
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            pushInt(method, 0);
+            method.visitFieldInsn(Opcodes.PUTFIELD, CPU_CLASS, "pageCrossed", "Z");
+
+            loadRegister(method, register);
+            pushInt(method, value);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EIGHT_BIT_REGISTER, "writeByte", "(B)V", false);
+
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, "P", "L" + PROCESSOR_STATUS + ";");
+            pushInt(method, value);
+            method.visitMethodInsn(
+                Opcodes.INVOKEVIRTUAL, PROCESSOR_STATUS, "setZeroAndNegativeFlags", "(B)V", false);
+        }
+
+        private static void writeZeroAndNegativeFlagsFrom(final MethodVisitor method, final String register) {
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, "P", "L" + PROCESSOR_STATUS + ";");
+            loadRegister(method, register);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EIGHT_BIT_REGISTER, "readAsByte", "()B", false);
+            method.visitMethodInsn(
+                Opcodes.INVOKEVIRTUAL, PROCESSOR_STATUS, "setZeroAndNegativeFlags", "(B)V", false);
+        }
+
+        private static void loadRegister(final MethodVisitor method, final String register) {
+            method.visitVarInsn(Opcodes.ALOAD, CPU_ARGUMENT);
+            method.visitFieldInsn(Opcodes.GETFIELD, CPU_CLASS, register, "L" + EIGHT_BIT_REGISTER + ";");
+        }
+
+        private static void pushInt(final MethodVisitor method, final int value) {
+            if (value >= -1 && value <= 5) {
+                method.visitInsn(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                method.visitIntInsn(Opcodes.BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                method.visitIntInsn(Opcodes.SIPUSH, value);
+            } else {
+                method.visitLdcInsn(value);
+            }
+        }
+
+        private static String operationField(final int index) {
+            return "operation" + index;
+        }
+    }
+}
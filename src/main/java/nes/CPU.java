@@ -1,7 +1,7 @@
 package nes;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -24,7 +24,11 @@ public class CPU extends Processor {
     public EightBitRegister X;
     public EightBitRegister Y;
     public ProcessorStatus P;
-    private HashMap<Byte, Operation> operationMap;
+    public boolean pageCrossed; // set while resolving an indexed address, see AddressingModeUtilities
+    public int operand; // The operand bytes of the instruction being executed (LSB first), see AddressingModeUtilities
+    private static final int NUM_OPCODES = 0x100;
+    private final Operation[] dispatchTable; // indexed by the unsigned opcode
+    private final InstructionCache instructionCache;
     private Interrupt currentInterrupt;
 
     CPU(final ConsoleMemory consoleMemory) {
@@ -37,7 +41,7 @@ public class CPU extends Processor {
         this.P = new ProcessorStatus();
         this.cycleCount = 0;
 
-        operationMap = new HashMap<>();
+        dispatchTable = new Operation[NUM_OPCODES];
 
         List<Instruction> instructions = new LinkedList<>(
             Arrays.asList(
@@ -102,10 +106,20 @@ public class CPU extends Processor {
 
         for (Instruction instruction : instructions) {
             for (Operation operation : instruction.getOperations()) {
-                operationMap.put(operation.opcode, operation);
+                dispatchTable[Utilities.toUnsignedValue(operation.opcode)] = operation;
             }
         }
 
+        // Every opcode we don't support still gets an entry so execute() never has to check for a missing one
+        for (int opcode = 0; opcode < NUM_OPCODES; opcode++) {
+            if (dispatchTable[opcode] == null) {
+                dispatchTable[opcode] = new UnimplementedOperation((byte) opcode);
+            }
+        }
+
+        instructionCache = new InstructionCache();
+        this.memory.setPRGChangeListener(instructionCache);
+
         // Initial state
         P.write(0x24);
         SP.write(0xFD);
@@ -156,6 +170,38 @@ public class CPU extends Processor {
 
     }
 
+    /**
+     * Write the registers, the cycle count and any pending interrupt into a save state.
+     *
+     * @param buffer
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.putShort((short) this.PC.read());
+        buffer.put(this.SP.readAsByte());
+        buffer.put(this.A.readAsByte());
+        buffer.put(this.X.readAsByte());
+        buffer.put(this.Y.readAsByte());
+        buffer.put(this.P.readAsByte());
+        buffer.putLong(this.cycleCount);
+        buffer.put((byte) this.currentInterrupt.ordinal());
+    }
+
+    /**
+     * Read back the state written by saveState().
+     *
+     * @param buffer
+     */
+    public void loadState(final ByteBuffer buffer) {
+        this.PC.write(buffer.getShort() & 0xFFFF);
+        this.SP.writeByte(buffer.get());
+        this.A.writeByte(buffer.get());
+        this.X.writeByte(buffer.get());
+        this.Y.writeByte(buffer.get());
+        this.P.writeByte(buffer.get());
+        this.cycleCount = buffer.getLong();
+        this.currentInterrupt = Interrupt.values()[buffer.get()];
+    }
+
     /**
      * This method is called externally (by the PPU or other things). It automatically handles interrupt priority.
      *
@@ -257,24 +303,11 @@ public class CPU extends Processor {
         return memory.read(Utilities.addUnsignedByteToInt(CPURAM.STACK_OFFSET, SP.readAsByte()));
     }
 
-    /**
-     * Read n bytes starting after the PC. For example, if PC=$0320,
-     * readAfterPC(3), would read in the bytes located at $0321, $0322, and
-     * $0323.
-     *
-     * @param n
-     * @return
-     */
-    public byte[] readAfterPC(int n) {
-        return this.memory.read(Utilities.addUnsignedByteToInt(this.PC.read(), (byte) 0x01), n);
-    }
-
     /**
      * Simulates one step in the computing cycle. Reads the byte at the PC for
-     * the opcode and carries through with execution. Throws an exception if we
-     * do not support the opcode fetched from the PC.
-     *
-     * @throws UnimplementedOpcode
+     * the opcode and carries through with execution. Opcodes we do not support
+     * are dispatched to an UnimplementedOperation. Instructions in cartridge
+     * code are only decoded the first time they run, see InstructionCache.
      */
     @Override
     public void execute() {
@@ -287,14 +320,104 @@ public class CPU extends Processor {
             return;
         }
 
-        byte opcode = this.memory.read(this.PC.read());
-        Operation op = this.operationMap.get(opcode);
-        if (op == null) {
-            System.err.println("Unimplemented instruction: " + String.format("0x%02x", opcode));
-            op = this.operationMap.get((byte) 0xEA);
+        final int address = this.PC.read();
+        if (address < InstructionCache.START_ADDRESS) {
+            decode(address).execute(this);
             return;
         }
-        op.execute(this);
+        decodeCartridge(address).execute(this);
+    }
+
+    /**
+     * The basic block starting at the PC, if the PC is in cartridge code that's run often enough to have one. There's
+     * never a block while an interrupt is waiting, since running it would put off handling the interrupt.
+     *
+     * @return The block, or null
+     */
+    BasicBlock hotBlock() {
+        final int address = this.PC.read();
+        if (address < InstructionCache.START_ADDRESS || this.currentInterrupt != Interrupt.NONE) {
+            return null;
+        }
+        BasicBlock block = this.instructionCache.getBlock(address);
+        if (block == null && this.instructionCache.countEntry(address)) {
+            block = buildBlock(address);
+            if (block != null) {
+                this.instructionCache.putBlock(block);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Decode instructions from an address up to and including the first one that ends a basic block.
+     *
+     * @param startAddress
+     * @return The block, or null if not even the first instruction fits before 0xFFFF
+     */
+    private BasicBlock buildBlock(final int startAddress) {
+        final Operation[] operations = new Operation[BasicBlock.MAX_INSTRUCTIONS];
+        final int[] operands = new int[BasicBlock.MAX_INSTRUCTIONS];
+        int numInstructions = 0;
+        int address = startAddress;
+        while (numInstructions < BasicBlock.MAX_INSTRUCTIONS && address <= 0xFFFF) {
+            final Operation operation = decodeCartridge(address);
+            if (address + operation.numBytes > 0x10000) {
+                break;
+            }
+            operations[numInstructions] = operation;
+            operands[numInstructions] = this.operand;
+            numInstructions++;
+            address += operation.numBytes;
+            if (operation.endsBasicBlock()) {
+                break;
+            }
+        }
+
+        if (numInstructions == 0) {
+            return null;
+        }
+        return new BasicBlock(
+            startAddress, Arrays.copyOf(operations, numInstructions), Arrays.copyOf(operands, numInstructions));
+    }
+
+    /**
+     * Decode the instruction at an address in cartridge code, through the instruction cache.
+     *
+     * @param address In [0x8000 -> 0xFFFF]
+     * @return
+     */
+    private Operation decodeCartridge(final int address) {
+        Operation operation = this.instructionCache.getOperation(address);
+        if (operation == null) {
+            operation = decode(address);
+            this.instructionCache.put(address, operation, this.operand);
+        } else {
+            this.operand = this.instructionCache.getOperand(address);
+        }
+        return operation;
+    }
+
+    /**
+     * Look up the operation for the opcode at an address and read its operand bytes into operand.
+     *
+     * @param address
+     * @return
+     */
+    private Operation decode(final int address) {
+        final Operation operation = this.dispatchTable[this.memory.read(address) & 0xFF];
+        switch (operation.numBytes) {
+            case 2:
+                this.operand = Utilities.toUnsignedValue(this.memory.read(address + 1));
+                break;
+            case 3:
+                this.operand = Utilities.toUnsignedValue(this.memory.read(address + 2), this.memory.read(address + 1));
+                break;
+            default:
+                this.operand = 0;
+                break;
+        }
+        return operation;
     }
 
     public static void main(String[] args) {
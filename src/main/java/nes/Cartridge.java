@@ -1,9 +1,11 @@
 package nes;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.CRC32;
 
 /**
  * Represents an NES cartridge. Created from the iNES file format (*main.java.nes) via makeFrom()
@@ -20,6 +22,7 @@ public class Cartridge {
 
     private final int mapperType;
     private final MirroringMode mirroringMode;
+    private final long romChecksum; // CRC32 of the whole iNES file
     // This will need to change when we can support multiple mappers!
     private final DefaultMapper mapper = new DefaultMapper();
 
@@ -27,11 +30,17 @@ public class Cartridge {
     private final int upperBankIndex;
     private final int chrRomBankIndex;
 
-    private Cartridge(final byte[][] prgRomBanks, final byte[][] chrRomBanks, int mapperType, MirroringMode mirroringMode) {
+    private Cartridge(
+            final byte[][] prgRomBanks,
+            final byte[][] chrRomBanks,
+            int mapperType,
+            MirroringMode mirroringMode,
+            long romChecksum) {
         this.prgRomBanks = prgRomBanks;
         this.chrRomBanks = chrRomBanks;
         this.mapperType = mapperType;
         this.mirroringMode = mirroringMode;
+        this.romChecksum = romChecksum;
 
         // Temporary while we don't have bank switching or main.java.memory management controllers
         lowerBankIndex = 0;
@@ -83,7 +92,10 @@ public class Cartridge {
                 }
             }
 
-            return new Cartridge(prgRomBanks, chrRomBanks, mapperType, mirroringMode);
+            final CRC32 romChecksum = new CRC32();
+            romChecksum.update(fileData);
+
+            return new Cartridge(prgRomBanks, chrRomBanks, mapperType, mirroringMode, romChecksum.getValue());
 
         } catch (IOException e) {
             System.out.println("File not found: " + nesFile.toString());
@@ -127,6 +139,15 @@ public class Cartridge {
         return this.mirroringMode;
     }
 
+    /**
+     * Returns the CRC32 of the ROM file this cartridge was made from, to tell whether two cartridges hold the same game.
+     *
+     * @return
+     */
+    public long getRomChecksum() {
+        return this.romChecksum;
+    }
+
     /**
      * Read a byte from the CPU ROM address space (this includes PRG, Expansion, and SRAM)
      *
@@ -147,6 +168,47 @@ public class Cartridge {
         return getPRGRomBank(upperBankIndex)[address - PRG_ROM_BANK_SIZE];
     }
 
+    /**
+     * Return the array that backs an address in the CPU ROM address space (same offsets as readCPUROM()). Together
+     * with getCPUROMBackingIndex() this lets ConsoleMemory map whole pages of cartridge space directly.
+     *
+     * @param address
+     * @return
+     */
+    public byte[] getCPUROMBacking(int address) {
+        if (address < this.expansionRom.length) {
+            return this.expansionRom;
+        } else if (address < (this.expansionRom.length + this.saveRam.length)) {
+            return this.saveRam;
+        }
+
+        address -= 0x3FE0;
+        if (address < PRG_ROM_BANK_SIZE) {
+            return getPRGRomBank(lowerBankIndex);
+        }
+        return getPRGRomBank(upperBankIndex);
+    }
+
+    /**
+     * Return the index into getCPUROMBacking(address) that holds the byte for an address in the CPU ROM address space.
+     *
+     * @param address
+     * @return
+     */
+    public int getCPUROMBackingIndex(int address) {
+        if (address < this.expansionRom.length) {
+            return address;
+        } else if (address < (this.expansionRom.length + this.saveRam.length)) {
+            return address - this.expansionRom.length;
+        }
+
+        address -= 0x3FE0;
+        if (address < PRG_ROM_BANK_SIZE) {
+            return address;
+        }
+        return address - PRG_ROM_BANK_SIZE;
+    }
+
     /**
      * Write a byte into the CPU ROM address space
      * Q: Will this be called during normal execution?
@@ -171,6 +233,50 @@ public class Cartridge {
         }
     }
 
+    /**
+     * Write the parts of the cartridge a game can change into a save state: expansion ROM, save RAM, the PRG banks
+     * (which writeCPUROM() writes into, so code can modify itself), and the CHR banks (which writeCHRROM() writes into).
+     *
+     * @param buffer
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.put(this.expansionRom);
+        buffer.put(this.saveRam);
+        for (final byte[] prgRomBank : this.prgRomBanks) {
+            buffer.put(prgRomBank);
+        }
+        for (final byte[] chrRomBank : this.chrRomBanks) {
+            buffer.put(chrRomBank);
+        }
+    }
+
+    /**
+     * Read back what saveState() wrote.
+     *
+     * @param buffer
+     * @return true if any PRG byte changed, in which case anything decoded from PRG is out of date
+     */
+    public boolean loadState(final ByteBuffer buffer) {
+        buffer.get(this.expansionRom);
+        buffer.get(this.saveRam);
+        boolean prgChanged = false;
+        for (final byte[] prgRomBank : this.prgRomBanks) {
+            // PRG hardly ever changes, so only copy (and report) the banks that did
+            final ByteBuffer savedBank = buffer.slice();
+            savedBank.limit(prgRomBank.length);
+            if (savedBank.equals(ByteBuffer.wrap(prgRomBank))) {
+                buffer.position(buffer.position() + prgRomBank.length);
+            } else {
+                buffer.get(prgRomBank);
+                prgChanged = true;
+            }
+        }
+        for (final byte[] chrRomBank : this.chrRomBanks) {
+            buffer.get(chrRomBank);
+        }
+        return prgChanged;
+    }
+
     /**
      * Read a byte from the CHR-ROM address space
      *
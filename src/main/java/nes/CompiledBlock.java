@@ -0,0 +1,54 @@
+package nes;
+
+/**
+ * A BasicBlock compiled by BlockCompiler into a JVM class of its own. The Scheduler runs it in place of the block's
+ * Operations, with the same cycle accounting (see Scheduler.runBlock()).
+ *
+ * This is public only so that the generated classes, which live in class loaders of their own, can extend it.
+ */
+public abstract class CompiledBlock {
+    private Scheduler scheduler;
+    private BasicBlock block;
+
+    protected CompiledBlock() {
+    }
+
+    void attach(final Scheduler scheduler, final BasicBlock block) {
+        this.scheduler = scheduler;
+        this.block = block;
+    }
+
+    /**
+     * Run the block's instructions in order, stopping early in the same places Scheduler.runBlock() would.
+     *
+     * @param cpu
+     * @return The number of CPU cycles run
+     */
+    protected abstract int run(CPU cpu);
+
+    /**
+     * Count the cycles up to and including the first one of the next instruction, as step() would, and load its
+     * operand.
+     *
+     * @param cpu
+     * @param operand The operand bytes of the instruction, as CPU.operand holds them
+     * @return The number of CPU cycles counted
+     */
+    protected final int startInstruction(final CPU cpu, final int operand) {
+        final int instructionCycles = (int) Math.max(cpu.cycleCount, 0) + 1;
+        scheduler.owePPUCycles(instructionCycles);
+        cpu.cycleCount -= instructionCycles;
+        cpu.operand = operand;
+        return instructionCycles;
+    }
+
+    /**
+     * Whether the last instruction started OAM DMA or wrote over the block, either of which ends the block early.
+     *
+     * @param cpu
+     * @return
+     */
+    protected final boolean stopped(final CPU cpu) {
+        return cpu.memory.dma() || !block.valid;
+    }
+}
@@ -1,6 +1,12 @@
 package nes;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import io.Joypad;
 import io.NoopController;
@@ -9,14 +15,35 @@ import memory.ConsoleMemory;
 /**
  * Encompasses multiple emulated components of the entire NES (the CPU, PPU, APU, Controllers, and Memory Mapper for the
  * Cartridge)
+ *
+ * A running console can be saved with snapshot() and picked up again with restore(), on this console or another one
+ * (possibly on another machine) running the same ROM. Snapshots are laid out as:
+ *
+ * 4 bytes: "WRST"
+ * 2 bytes: the format version, STATE_VERSION
+ * 4 bytes: CRC32 of the ROM file
+ * 4 bytes: the size of the state
+ * The rest: the state as written by saveState(), deflated
+ *
+ * STATE_VERSION has to go up whenever a component changes what it writes in saveState(), since restore() only accepts
+ * its own version.
  */
 public class Console {
+    private static final int MAX_STATE_SIZE = 0x100000;
+    private static final int STATE_MAGIC = 0x57525354; // "WRST"
+    private static final short STATE_VERSION = 2;
+    private static final int STATE_HEADER_SIZE = 4 + 2 + 4 + 4;
     public final CPU cpu;
     public final PPU ppu;
+    public final Scheduler scheduler;
     private final ConsoleMemory consoleMemory;
     private final Cartridge cartridge;
     private Joypad joypadOne;
     private Joypad joypadTwo;
+    private int stateSize; // Measured the first time it's asked for
+    private ByteBuffer rawState; // Reused by snapshot() and restore(), created on first use along with the (de)compressors
+    private Deflater deflater;
+    private Inflater inflater;
 
     /**
      * Allow the option of setting joypadOne later. This lets us add players after a game has started.
@@ -31,6 +58,166 @@ public class Console {
         this.consoleMemory.setJoypadTwo(joypadTwo);
     }
 
+    /**
+     * Clock the console once. Prefer runFrame(), or the Scheduler's step(), which do the same work in batches.
+     *
+     * @return true if an NMI was triggered, which is when a finished frame is ready to be displayed
+     */
+    public boolean executeCycle() {
+        return this.scheduler.executeCycle();
+    }
+
+    /**
+     * Run until the PPU has finished the frame it's on, which is at the start of VBLANK.
+     */
+    public void runFrame() {
+        this.scheduler.runFrame();
+    }
+
+    /**
+     * Write a snapshot of the whole console (CPU, PPU, and all of memory except PRG-ROM) into a buffer at its current
+     * position. This is a straight copy of the state with no allocation, so it's cheap enough to do every frame, e.g.
+     * to roll back and re-simulate frames in netplay. The joypads aren't part of the state.
+     *
+     * @param buffer Needs at least stateSize() bytes remaining
+     */
+    public void saveState(final ByteBuffer buffer) {
+        this.scheduler.sync();
+        this.cpu.saveState(buffer);
+        this.ppu.saveState(buffer);
+        this.consoleMemory.saveState(buffer);
+    }
+
+    /**
+     * Restore a snapshot written by saveState() on a console running the same ROM.
+     *
+     * @param buffer
+     */
+    public void loadState(final ByteBuffer buffer) {
+        this.cpu.loadState(buffer);
+        this.ppu.loadState(buffer);
+        this.consoleMemory.loadState(buffer);
+        this.scheduler.resynchronize();
+    }
+
+    /**
+     * The number of bytes saveState() writes. This only depends on the ROM.
+     *
+     * @return
+     */
+    public int stateSize() {
+        if (stateSize == 0) {
+            final ByteBuffer buffer = ByteBuffer.allocate(MAX_STATE_SIZE);
+            saveState(buffer);
+            stateSize = buffer.position();
+        }
+        return stateSize;
+    }
+
+    /**
+     * Save the whole console in the compact, versioned format described above.
+     *
+     * @return The snapshot
+     */
+    public byte[] snapshot() {
+        if (rawState == null) {
+            initializeSnapshots();
+        }
+        rawState.clear();
+        saveState(rawState);
+
+        deflater.reset();
+        deflater.setInput(rawState.array(), 0, rawState.position());
+        deflater.finish();
+        // Deflating never grows the data by more than a few bytes per 16 KiB block
+        final ByteBuffer snapshot = ByteBuffer.allocate(STATE_HEADER_SIZE + stateSize + stateSize / 1000 + 64);
+        snapshot.putInt(STATE_MAGIC);
+        snapshot.putShort(STATE_VERSION);
+        snapshot.putInt((int) cartridge.getRomChecksum());
+        snapshot.putInt(stateSize);
+        final int deflatedSize =
+            deflater.deflate(snapshot.array(), STATE_HEADER_SIZE, snapshot.capacity() - STATE_HEADER_SIZE);
+        return Arrays.copyOf(snapshot.array(), STATE_HEADER_SIZE + deflatedSize);
+    }
+
+    /**
+     * Load a snapshot from snapshot(). The snapshot is checked before anything is loaded, so the console is left as it
+     * was if it's rejected. The joypads and the frames already drawn aren't part of a snapshot.
+     *
+     * @param snapshot
+     * @throws IllegalArgumentException if the snapshot is from another version or ROM, or is corrupted
+     */
+    public void restore(final byte[] snapshot) {
+        if (rawState == null) {
+            initializeSnapshots();
+        }
+        final ByteBuffer header = ByteBuffer.wrap(snapshot);
+        if (snapshot.length < STATE_HEADER_SIZE || header.getInt() != STATE_MAGIC) {
+            throw new IllegalArgumentException("Not a WhiteRaven save state");
+        }
+        final short version = header.getShort();
+        if (version != STATE_VERSION) {
+            throw new IllegalArgumentException(String.format(
+                "Save state is version %d, but only version %d can be loaded", version, STATE_VERSION));
+        }
+        if (header.getInt() != (int) cartridge.getRomChecksum()) {
+            throw new IllegalArgumentException("Save state is from a different ROM");
+        }
+        if (header.getInt() != stateSize) {
+            throw new IllegalArgumentException("Save state has the wrong size");
+        }
+
+        inflater.reset();
+        inflater.setInput(snapshot, STATE_HEADER_SIZE, snapshot.length - STATE_HEADER_SIZE);
+        final int inflatedSize;
+        try {
+            inflatedSize = inflater.inflate(rawState.array());
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Save state is corrupted", e);
+        }
+        if (inflatedSize != stateSize || !inflater.finished()) {
+            throw new IllegalArgumentException("Save state is corrupted");
+        }
+
+        rawState.clear();
+        loadState(rawState);
+    }
+
+    private void initializeSnapshots() {
+        rawState = ByteBuffer.allocate(stateSize());
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        inflater = new Inflater();
+    }
+
+    /**
+     * CRC32 of the ROM file the console is running.
+     *
+     * @return
+     */
+    public long getRomChecksum() {
+        return this.cartridge.getRomChecksum();
+    }
+
+    /**
+     * A checksum of the CPU registers, internal RAM, and how far the console has run. Two consoles that have run the
+     * same ROM with the same inputs have the same checksum, so netplay peers compare these to notice when they've
+     * drifted apart.
+     *
+     * @return
+     */
+    public long stateChecksum() {
+        final CRC32 checksum = new CRC32();
+        checksum.update(this.cpu.PC.read() >> 8);
+        checksum.update(this.cpu.PC.read());
+        checksum.update(this.cpu.A.readAsByte());
+        checksum.update(this.cpu.X.readAsByte());
+        checksum.update(this.cpu.Y.readAsByte());
+        checksum.update(this.cpu.SP.readAsByte());
+        checksum.update(this.cpu.P.readAsByte());
+        this.consoleMemory.updateChecksum(checksum);
+        return checksum.getValue() ^ (this.ppu.getFrameCount() << 32);
+    }
+
     private Console(
             ConsoleMemory consoleMemory,
             CPU cpu,
@@ -42,6 +229,7 @@ public class Console {
         this.consoleMemory = consoleMemory;
         this.cpu = cpu;
         this.ppu = ppu;
+        this.scheduler = new Scheduler(cpu, ppu, consoleMemory);
         this.cartridge = cartridge;
         this.joypadOne = joypadOne;
         this.joypadTwo = joypadTwo;
@@ -54,6 +242,7 @@ public class Console {
         private Cartridge cartridge;
         private Joypad joypadOne;
         private Joypad joypadTwo;
+        private RenderMode renderMode = RenderMode.DOT;
 
         public Builder setCartridgePath(final String cartridgePath) {
             this.cartridge = Cartridge.makeFrom(Paths.get(cartridgePath));
@@ -70,6 +259,11 @@ public class Console {
             return this;
         }
 
+        public Builder setRenderMode(final RenderMode renderMode) {
+            this.renderMode = renderMode;
+            return this;
+        }
+
         public Console build() {
             if (this.joypadOne == null) {
                 this.joypadOne = new NoopController();
@@ -81,6 +275,7 @@ public class Console {
             this.consoleMemory = new ConsoleMemory(cartridge, joypadOne, joypadTwo);
             this.cpu = new CPU(consoleMemory);
             this.ppu = new PPU(consoleMemory);
+            this.ppu.setRenderMode(renderMode);
 
             return new Console(consoleMemory, cpu, ppu, cartridge, joypadOne, joypadTwo);
         }
@@ -0,0 +1,181 @@
+package nes;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+
+/**
+ * Runs a Console as fast as possible with no display and no frame clock, for a number of frames or until a stop
+ * condition holds, and reports how fast the emulation went. Useful for batch ROM regression runs, bots, and figuring
+ * out how many consoles a machine can host.
+ *
+ * Given a Movie, the runner plays it back and stops at its end, so a recorded session can be checked or benchmarked.
+ */
+public class HeadlessRunner {
+    private static final long DEFAULT_NUM_FRAMES = 600;
+    private static final double NES_FRAMES_PER_SECOND = 60.0988;
+
+    private final Console console;
+    private final long maxFrames;
+    private final Predicate<Console> stopCondition;
+    private final MoviePlayer moviePlayer; // null if there's no movie to play
+
+    private HeadlessRunner(
+            Console console,
+            long maxFrames,
+            Predicate<Console> stopCondition,
+            MoviePlayer moviePlayer) {
+        this.console = console;
+        this.maxFrames = maxFrames;
+        this.stopCondition = stopCondition;
+        this.moviePlayer = moviePlayer;
+    }
+
+    /**
+     * Run until maxFrames frames have finished, the stop condition holds, or the movie is over. The stop condition is
+     * checked once per frame, at the start of VBLANK.
+     *
+     * @return The stats of the run
+     */
+    public Report run() {
+        final long startFrame = console.ppu.getFrameCount();
+        long frames = 0;
+        long cpuCycles = 0;
+        final long startTime = System.nanoTime();
+
+        while (frames < maxFrames) {
+            cpuCycles += console.scheduler.step();
+
+            final long finishedFrames = console.ppu.getFrameCount() - startFrame;
+            if (finishedFrames != frames) {
+                frames = finishedFrames;
+                if (stopCondition.test(console) || (moviePlayer != null && !moviePlayer.update())) {
+                    break;
+                }
+            }
+        }
+
+        return new Report(frames, cpuCycles, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Whether the movie was played to the end and the console finished in the state it was recorded in.
+     *
+     * @return
+     */
+    public boolean replayMatchesMovie() {
+        return moviePlayer != null && moviePlayer.matchesRecording();
+    }
+
+    /**
+     * The number of frames and cycles run and how long it took.
+     */
+    public static class Report {
+        public final long frames;
+        public final long cpuCycles;
+        public final long elapsedNanos;
+
+        private Report(long frames, long cpuCycles, long elapsedNanos) {
+            this.frames = frames;
+            this.cpuCycles = cpuCycles;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double elapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double framesPerSecond() {
+            return frames / elapsedSeconds();
+        }
+
+        public double cpuCyclesPerSecond() {
+            return cpuCycles / elapsedSeconds();
+        }
+
+        public double ppuCyclesPerSecond() {
+            return cpuCycles * Scheduler.PPU_CYCLES_PER_CPU_CYCLE / elapsedSeconds();
+        }
+
+        /**
+         * How many times faster than a real NES we ran.
+         */
+        public double speedup() {
+            return framesPerSecond() / NES_FRAMES_PER_SECOND;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%d frames in %.3f s: %.1f fps (%.2fx real time), %.0f CPU cycles/s, %.0f PPU cycles/s",
+                frames, elapsedSeconds(), framesPerSecond(), speedup(), cpuCyclesPerSecond(), ppuCyclesPerSecond());
+        }
+    }
+
+    public static class Builder {
+        private Console console;
+        private long maxFrames = DEFAULT_NUM_FRAMES;
+        private Predicate<Console> stopCondition = console -> false;
+        private Movie movie;
+
+        public Builder setConsole(final Console console) {
+            this.console = console;
+            return this;
+        }
+
+        public Builder setMaxFrames(final long maxFrames) {
+            this.maxFrames = maxFrames;
+            return this;
+        }
+
+        public Builder setStopCondition(final Predicate<Console> stopCondition) {
+            this.stopCondition = stopCondition;
+            return this;
+        }
+
+        /**
+         * Play a movie on the console. The console has to have just been built if the movie starts at power-on.
+         */
+        public Builder setMovie(final Movie movie) {
+            this.movie = movie;
+            return this;
+        }
+
+        public HeadlessRunner build() {
+            final MoviePlayer moviePlayer = movie != null ? new MoviePlayer(console, movie) : null;
+            return new HeadlessRunner(console, maxFrames, stopCondition, moviePlayer);
+        }
+    }
+
+    /**
+     * Usage: HeadlessRunner path/to/game.nes [frames] [DOT|SCANLINE] [path/to/movie.wrm]
+     *
+     * A movie is always played to its end, whatever the number of frames.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Provide a file path to a game!");
+            System.exit(1);
+        }
+        final long frames = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_NUM_FRAMES;
+        final RenderMode renderMode = args.length > 2 ? RenderMode.valueOf(args[2]) : RenderMode.DOT;
+
+        final Console console = new Console.Builder()
+            .setCartridgePath(args[0])
+            .setRenderMode(renderMode)
+            .build();
+        final Movie movie = args.length > 3 ? Movie.read(Paths.get(args[3])) : null;
+        final HeadlessRunner runner = new HeadlessRunner.Builder()
+            .setConsole(console)
+            .setMaxFrames(movie != null ? movie.getFrameCount() : frames)
+            .setMovie(movie)
+            .build();
+
+        System.out.println(runner.run());
+        if (movie != null) {
+            System.out.println(runner.replayMatchesMovie()
+                ? "The replay matches the recording"
+                : "The replay doesn't match the recording!");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package nes;
+
+import java.util.Arrays;
+import memory.PRGChangeListener;
+import operations.Operation;
+
+/**
+ * The instructions the CPU has decoded from the cartridge code in [0x8000 -> 0xFFFF], by address: the Operation for
+ * the opcode and the operand bytes after it. Cartridge code hardly ever changes, so once an instruction is decoded the
+ * CPU can run it again without fetching and looking up anything.
+ *
+ * Code that's entered often enough (HOT_ENTRY_COUNT times) also gets a BasicBlock starting there. If a block is
+ * written over, no block is built there again until the banks are switched, since self-modifying code would only keep
+ * rebuilding it.
+ *
+ * An instruction or block is dropped whenever one of its bytes is written, and everything is dropped if the banks are
+ * switched.
+ */
+public class InstructionCache implements PRGChangeListener {
+    public static final int START_ADDRESS = 0x8000;
+    private static final int SIZE = 0x10000 - START_ADDRESS;
+    private static final int MAX_INSTRUCTION_BYTES = 3;
+    private static final int HOT_ENTRY_COUNT = 16;
+    private static final byte NEVER_HOT = -1;
+
+    private final Operation[] operations = new Operation[SIZE];
+    private final int[] operands = new int[SIZE];
+    private final BasicBlock[] blocks = new BasicBlock[SIZE];
+    private final byte[] entryCounts = new byte[SIZE];
+    private final short[] blockCoverage = new short[SIZE]; // How many blocks each byte is in
+
+    /**
+     * The decoded operation at an address, or null if it hasn't been decoded.
+     *
+     * @param address In [0x8000 -> 0xFFFF]
+     * @return
+     */
+    public Operation getOperation(final int address) {
+        return operations[address - START_ADDRESS];
+    }
+
+    /**
+     * The operand bytes of the instruction at an address, as CPU.operand holds them.
+     *
+     * @param address In [0x8000 -> 0xFFFF]
+     * @return
+     */
+    public int getOperand(final int address) {
+        return operands[address - START_ADDRESS];
+    }
+
+    /**
+     * Remember a decoded instruction. Instructions that run past 0xFFFF aren't kept, since their operand comes from
+     * RAM.
+     */
+    public void put(final int address, final Operation operation, final int operand) {
+        if (address + operation.numBytes <= 0x10000) {
+            operations[address - START_ADDRESS] = operation;
+            operands[address - START_ADDRESS] = operand;
+        }
+    }
+
+    /**
+     * The block starting at an address, or null if there isn't one yet.
+     *
+     * @param address In [0x8000 -> 0xFFFF]
+     * @return
+     */
+    BasicBlock getBlock(final int address) {
+        return blocks[address - START_ADDRESS];
+    }
+
+    /**
+     * Count that the code at an address was entered.
+     *
+     * @param address In [0x8000 -> 0xFFFF]
+     * @return true once it's been entered often enough to build a block for
+     */
+    boolean countEntry(final int address) {
+        final byte entryCount = entryCounts[address - START_ADDRESS];
+        if (entryCount == NEVER_HOT) {
+            return false;
+        }
+        if (entryCount < HOT_ENTRY_COUNT) {
+            entryCounts[address - START_ADDRESS]++;
+            return false;
+        }
+        return true;
+    }
+
+    void putBlock(final BasicBlock block) {
+        blocks[block.startAddress - START_ADDRESS] = block;
+        for (int address = block.startAddress; address < block.endAddress; address++) {
+            blockCoverage[address - START_ADDRESS]++;
+        }
+    }
+
+    @Override
+    public void prgWritten(final int address) {
+        // Drop every instruction the byte could be part of
+        for (int start = address - MAX_INSTRUCTION_BYTES + 1; start <= address; start++) {
+            if (start >= START_ADDRESS) {
+                operations[start - START_ADDRESS] = null;
+            }
+        }
+        // And every block
+        if (blockCoverage[address - START_ADDRESS] == 0) {
+            return;
+        }
+        for (int start = address - BasicBlock.MAX_BYTES + 1; start <= address; start++) {
+            if (start >= START_ADDRESS) {
+                final BasicBlock block = blocks[start - START_ADDRESS];
+                if (block != null && block.endAddress > address) {
+                    block.valid = false;
+                    blocks[start - START_ADDRESS] = null;
+                    entryCounts[start - START_ADDRESS] = NEVER_HOT;
+                    for (int blockAddress = block.startAddress; blockAddress < block.endAddress; blockAddress++) {
+                        blockCoverage[blockAddress - START_ADDRESS]--;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void prgRemapped() {
+        Arrays.fill(operations, null);
+        for (final BasicBlock block : blocks) {
+            if (block != null) {
+                block.valid = false;
+            }
+        }
+        Arrays.fill(blocks, null);
+        Arrays.fill(entryCounts, (byte) 0);
+        Arrays.fill(blockCoverage, (short) 0);
+    }
+}
@@ -0,0 +1,198 @@
+package nes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The buttons held on both joypads for every frame of a session, starting either at power-on or at a save state. Since
+ * the console is deterministic, playing the inputs back (see MoviePlayer) from the same start reproduces the session
+ * exactly, which makes movies handy for regression tests, bug reports, and benchmarks. Movie files are laid out as:
+ *
+ * 4 bytes: "WRMV"
+ * 2 bytes: the format version, MOVIE_VERSION
+ * 4 bytes: CRC32 of the ROM file
+ * 4 bytes: the size of the start state, 0 to start at power-on
+ * The start state, from Console.snapshot()
+ * 4 bytes: the number of frames
+ * 8 bytes: Console.stateChecksum() after the last frame
+ * The rest: a joypad one mask and a joypad two mask for every frame, deflated
+ *
+ * Inputs rarely change from one frame to the next, so they deflate down to a few bytes a second.
+ */
+public class Movie {
+    private static final int MOVIE_MAGIC = 0x57524D56; // "WRMV"
+    private static final short MOVIE_VERSION = 1;
+    private static final int BYTES_PER_FRAME = 2;
+    private static final int INITIAL_FRAMES = 3600; // A minute
+
+    private final long romChecksum;
+    private final byte[] startState; // null to start at power-on
+    private byte[] inputs;
+    private int frameCount;
+    private final long finalChecksum;
+
+    Movie(final long romChecksum, final byte[] startState) {
+        this(romChecksum, startState, new byte[INITIAL_FRAMES * BYTES_PER_FRAME], 0, 0);
+    }
+
+    private Movie(
+            final long romChecksum,
+            final byte[] startState,
+            final byte[] inputs,
+            final int frameCount,
+            final long finalChecksum) {
+        this.romChecksum = romChecksum;
+        this.startState = startState;
+        this.inputs = inputs;
+        this.frameCount = frameCount;
+        this.finalChecksum = finalChecksum;
+    }
+
+    public long getRomChecksum() {
+        return romChecksum;
+    }
+
+    /**
+     * Whether the movie starts at power-on, as opposed to a save state.
+     */
+    public boolean startsAtPowerOn() {
+        return startState == null;
+    }
+
+    /**
+     * The save state the movie starts at, or null if it starts at power-on.
+     *
+     * @return
+     */
+    public byte[] getStartState() {
+        return startState;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Console.stateChecksum() after the last frame, to check that a replay ended up where the recording did.
+     *
+     * @return
+     */
+    public long getFinalChecksum() {
+        return finalChecksum;
+    }
+
+    public byte getButtonsOne(final int frame) {
+        return inputs[frame * BYTES_PER_FRAME];
+    }
+
+    public byte getButtonsTwo(final int frame) {
+        return inputs[frame * BYTES_PER_FRAME + 1];
+    }
+
+    /**
+     * Add the inputs for the next frame.
+     */
+    void addFrame(final byte buttonsOne, final byte buttonsTwo) {
+        if ((frameCount + 1) * BYTES_PER_FRAME > inputs.length) {
+            inputs = Arrays.copyOf(inputs, inputs.length * 2);
+        }
+        inputs[frameCount * BYTES_PER_FRAME] = buttonsOne;
+        inputs[frameCount * BYTES_PER_FRAME + 1] = buttonsTwo;
+        frameCount++;
+    }
+
+    /**
+     * Drop every frame from frameCount on, e.g. when the game is rewound while recording.
+     */
+    void truncate(final int frameCount) {
+        this.frameCount = Math.min(this.frameCount, frameCount);
+    }
+
+    /**
+     * A copy of the first frames of this movie.
+     */
+    Movie copy(final int frameCount, final long finalChecksum) {
+        return new Movie(
+            romChecksum, startState, Arrays.copyOf(inputs, frameCount * BYTES_PER_FRAME), frameCount, finalChecksum);
+    }
+
+    public void write(final Path path) throws IOException {
+        try (OutputStream file = Files.newOutputStream(path)) {
+            write(file);
+        }
+    }
+
+    public void write(final OutputStream outputStream) throws IOException {
+        final DataOutputStream header = new DataOutputStream(new BufferedOutputStream(outputStream));
+        header.writeInt(MOVIE_MAGIC);
+        header.writeShort(MOVIE_VERSION);
+        header.writeInt((int) romChecksum);
+        if (startState == null) {
+            header.writeInt(0);
+        } else {
+            header.writeInt(startState.length);
+            header.write(startState);
+        }
+        header.writeInt(frameCount);
+        header.writeLong(finalChecksum);
+
+        final DeflaterOutputStream body = new DeflaterOutputStream(header);
+        body.write(inputs, 0, frameCount * BYTES_PER_FRAME);
+        body.finish();
+        header.flush();
+    }
+
+    /**
+     * Read a movie file written by write().
+     *
+     * @throws IllegalArgumentException if it's not a movie file, or is from another version
+     */
+    public static Movie read(final Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            return read(file);
+        }
+    }
+
+    public static Movie read(final InputStream inputStream) throws IOException {
+        final DataInputStream header = new DataInputStream(new BufferedInputStream(inputStream));
+        if (header.readInt() != MOVIE_MAGIC) {
+            throw new IllegalArgumentException("Not a WhiteRaven movie");
+        }
+        final short version = header.readShort();
+        if (version != MOVIE_VERSION) {
+            throw new IllegalArgumentException(String.format(
+                "Movie is version %d, but only version %d can be played", version, MOVIE_VERSION));
+        }
+        final long romChecksum = header.readInt() & 0xFFFFFFFFL;
+        final int startStateSize = header.readInt();
+        byte[] startState = null;
+        if (startStateSize > 0) {
+            startState = new byte[startStateSize];
+            header.readFully(startState);
+        }
+        final int frameCount = header.readInt();
+        final long finalChecksum = header.readLong();
+        if (startStateSize < 0 || frameCount < 0) {
+            throw new IllegalArgumentException("Movie is corrupted");
+        }
+
+        final byte[] inputs = new byte[frameCount * BYTES_PER_FRAME];
+        try {
+            new DataInputStream(new InflaterInputStream(header)).readFully(inputs);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Movie is missing frames", e);
+        }
+        return new Movie(romChecksum, startState, inputs, frameCount, finalChecksum);
+    }
+}
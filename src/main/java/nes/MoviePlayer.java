@@ -0,0 +1,102 @@
+package nes;
+
+import io.InputMaskJoypad;
+
+/**
+ * Plays a Movie back on a console: loads the movie's start state, then holds the movie's buttons on both joypads one
+ * frame at a time. Nothing here waits on a clock, so a movie replays as fast as the console can run.
+ */
+public class MoviePlayer {
+    private final Console console;
+    private final Movie movie;
+    private final InputMaskJoypad joypadOne;
+    private final InputMaskJoypad joypadTwo;
+    private final long startFrame;
+
+    /**
+     * @param console A console running the movie's ROM. It has to have just been built if the movie starts at power-on.
+     * @param movie
+     * @throws IllegalArgumentException if the movie is for another ROM, or can't start on this console
+     */
+    public MoviePlayer(final Console console, final Movie movie) {
+        if (movie.getRomChecksum() != console.getRomChecksum()) {
+            throw new IllegalArgumentException("Movie is for a different ROM");
+        }
+        if (movie.startsAtPowerOn()) {
+            if (console.ppu.getFrameCount() != 0) {
+                throw new IllegalArgumentException("Movie starts at power-on, but the console has already been started");
+            }
+        } else {
+            console.restore(movie.getStartState());
+        }
+
+        this.console = console;
+        this.movie = movie;
+        this.joypadOne = new InputMaskJoypad();
+        this.joypadTwo = new InputMaskJoypad();
+        this.startFrame = console.ppu.getFrameCount();
+
+        console.setJoypadOne(joypadOne);
+        console.setJoypadTwo(joypadTwo);
+        update();
+    }
+
+    /**
+     * Hold the buttons for the frame the console is on. Call this between cycles, at least once per frame.
+     *
+     * @return false once the console has run every frame in the movie
+     */
+    public boolean update() {
+        final long frame = currentFrame();
+        if (frame >= movie.getFrameCount()) {
+            return false;
+        }
+        joypadOne.setButtons(movie.getButtonsOne((int) frame));
+        joypadTwo.setButtons(movie.getButtonsTwo((int) frame));
+        return true;
+    }
+
+    /**
+     * Run the next frame of the movie.
+     *
+     * @return false if the movie had already finished, in which case nothing is run
+     */
+    public boolean playFrame() {
+        if (!update()) {
+            return false;
+        }
+        console.runFrame();
+        return true;
+    }
+
+    /**
+     * Run the rest of the movie.
+     */
+    public void playAll() {
+        while (playFrame()) {
+        }
+    }
+
+    /**
+     * The number of movie frames the console has run.
+     *
+     * @return
+     */
+    public long currentFrame() {
+        return console.ppu.getFrameCount() - startFrame;
+    }
+
+    public boolean isFinished() {
+        return currentFrame() >= movie.getFrameCount();
+    }
+
+    /**
+     * Whether the replay has finished in the same state the recording did. If not, the emulation isn't deterministic
+     * (or has changed since the movie was recorded).
+     *
+     * @return
+     */
+    public boolean matchesRecording() {
+        return isFinished() && console.stateChecksum() == movie.getFinalChecksum();
+    }
+}
@@ -0,0 +1,101 @@
+package nes;
+
+import io.InputMaskJoypad;
+import io.Joypad;
+
+/**
+ * Records a Movie of a console's inputs. The recorder puts joypads of its own into the console and, at the start of
+ * every frame, copies the buttons held on the real joypads into them and into the movie. The game only ever sees
+ * buttons change between frames, which is what makes the movie replay exactly.
+ *
+ * Frames are numbered by the PPU's frame count, so if the console is rewound (or loads an earlier RewindBuffer frame)
+ * while recording, the frames after it are dropped and recorded again.
+ */
+public class MovieRecorder {
+    private final Console console;
+    private final Joypad sourceOne;
+    private final Joypad sourceTwo;
+    private final InputMaskJoypad joypadOne;
+    private final InputMaskJoypad joypadTwo;
+    private final Movie movie;
+    private final long startFrame;
+    private long currentFrame; // Relative to startFrame
+    private long currentFrameChecksum; // The console's checksum at the start of currentFrame
+
+    private MovieRecorder(final Console console, final Joypad sourceOne, final Joypad sourceTwo, final Movie movie) {
+        this.console = console;
+        this.sourceOne = sourceOne;
+        this.sourceTwo = sourceTwo;
+        this.joypadOne = new InputMaskJoypad();
+        this.joypadTwo = new InputMaskJoypad();
+        this.movie = movie;
+        this.startFrame = console.ppu.getFrameCount();
+        this.currentFrame = -1;
+
+        console.setJoypadOne(joypadOne);
+        console.setJoypadTwo(joypadTwo);
+        update();
+    }
+
+    /**
+     * Record a console that has just been built and hasn't run yet.
+     *
+     * @param console
+     * @param sourceOne The joypad the player one buttons are read from
+     * @param sourceTwo The joypad the player two buttons are read from
+     */
+    public static MovieRecorder fromPowerOn(final Console console, final Joypad sourceOne, final Joypad sourceTwo) {
+        if (console.ppu.getFrameCount() != 0) {
+            throw new IllegalStateException("The console has already been started");
+        }
+        return new MovieRecorder(console, sourceOne, sourceTwo, new Movie(console.getRomChecksum(), null));
+    }
+
+    /**
+     * Record a console from wherever it is now, which is saved into the movie as its start. Call this between frames.
+     */
+    public static MovieRecorder fromCurrentState(final Console console, final Joypad sourceOne, final Joypad sourceTwo) {
+        return new MovieRecorder(console, sourceOne, sourceTwo, new Movie(console.getRomChecksum(), console.snapshot()));
+    }
+
+    /**
+     * Record the buttons for a new frame if the console has started one since the last call. Call this between
+     * cycles, at least once per frame.
+     */
+    public synchronized void update() {
+        final long frame = console.ppu.getFrameCount() - startFrame;
+        if (frame == currentFrame) {
+            return;
+        }
+        if (frame < 0) {
+            throw new IllegalStateException("The console was rewound to before the movie started");
+        }
+
+        final byte buttonsOne = sourceOne.getButtonMask();
+        final byte buttonsTwo = sourceTwo.getButtonMask();
+        joypadOne.setButtons(buttonsOne);
+        joypadTwo.setButtons(buttonsTwo);
+        movie.truncate((int) frame);
+        movie.addFrame(buttonsOne, buttonsTwo);
+        currentFrame = frame;
+        currentFrameChecksum = console.stateChecksum();
+    }
+
+    /**
+     * Run the console for one frame, recording its buttons first.
+     */
+    public void runFrame() {
+        update();
+        console.runFrame();
+        update();
+    }
+
+    /**
+     * The movie recorded so far, up to the start of the frame the console is on. This can be called from any thread.
+     *
+     * @return
+     */
+    public synchronized Movie getMovie() {
+        return movie.copy((int) currentFrame, currentFrameChecksum);
+    }
+}
@@ -1,7 +1,10 @@
 package nes;
 
-import memory.CircularBuffer;
+import java.nio.ByteBuffer;
 import memory.ConsoleMemory;
+import memory.FrameBufferPool;
+import memory.IORegisterMemory;
+import memory.PPURegisterListener;
 import memory.ShiftRegister;
 import memory.Sprite;
 import operations.Utilities;
@@ -9,12 +12,14 @@ import operations.Utilities;
 /**
  * Models the PPU architecture
  */
-public class PPU extends Processor {
+public class PPU extends Processor implements PPURegisterListener {
     private boolean evenFlag;
     private int scanlineNumber;
     private int scanlineCycle;
-    private final CircularBuffer<int[]> imageBuffer;
-    private static final int NUM_BUFFERED_IMAGES = 2;
+    private long frameCount; // The number of frames finished so far
+    private final FrameBufferPool frameBuffers;
+    private int[] image; // The frame we're currently drawing into
+    private static final int NUM_BUFFERED_IMAGES = 3;
 
     // Values from PPUControl
     private boolean generateNMI;
@@ -25,9 +30,7 @@ public class PPU extends Processor {
     private int nameTableAddressIndex;
 
     // Values from PPUMask
-    private boolean green;
-    private boolean blue;
-    private boolean red;
+    private int colorEmphasis; // the red, green, and blue emphasis bits as a number from 0 to 7
     private boolean showSprites;
     private boolean showBG;
     private boolean leftSprites;
@@ -38,11 +41,14 @@ public class PPU extends Processor {
 
     public static final int SCREEN_WIDTH = 256;
     public static final int SCREEN_HEIGHT = 240;
-    private static final int PALETTE_OFFSET = 0x3F00;
 
-    // PPU register addresses
-    private static final int PPU_CTRL = 0x2000;
-    private static final int PPU_MASK = 0x2001;
+    // Each pixel of a frame is an RGB color in the low 24 bits with the 6-bit system color index it came from in bits
+    // 24-29, so consumers that only care about the NES colors (like the network transport) don't have to map RGB back.
+    // Pixels that were never drawn are black.
+    private static final int COLOR_INDEX_SHIFT = 24;
+    private static final int BLACK_COLOR_INDEX = 0x0F;
+    private static final int BLANK_PIXEL = BLACK_COLOR_INDEX << COLOR_INDEX_SHIFT;
+    private static final int PALETTE_OFFSET = 0x3F00;
 
     private final ShiftRegister bgTiles;
     private byte nameTableByte;
@@ -51,6 +57,19 @@ public class PPU extends Processor {
     private byte highBGByte;
 
     private final Sprite[] sprites;
+    private int numSprites; // The number of slots in sprites used on the current line
+
+    // Scanline rendering state. When dotAccurateLine is false, the pixels of the current line are rendered in batches
+    // from the tile rows in lineTile* (fetched on the first batch of a line), and renderedPixels counts how many of
+    // them are already in the image.
+    private RenderMode renderMode;
+    private boolean dotAccurateLine;
+    private boolean lineTilesFetched;
+    private int renderedPixels;
+    private static final int TILES_PER_LINE = SCREEN_WIDTH / 8 + 1; // One extra tile to cover fine X scrolling
+    private final byte[] lineTileLow = new byte[TILES_PER_LINE];
+    private final byte[] lineTileHigh = new byte[TILES_PER_LINE];
+    private final byte[] lineTileAttribute = new byte[TILES_PER_LINE];
 
     private static final int[] patternTableAddresses = {0x0000, 0x1000};
     private static final int[] nameTableAddresses = {0x2000, 0x2400, 0x2800, 0x2C00};
@@ -132,6 +151,35 @@ public class PPU extends Processor {
             {0x00, 0x00, 0x00}, // 0x3E
             {0x00, 0x00, 0x00}  // 0x3F
     };
+
+    // Packed RGB values of the system palette for each of the 8 combinations of color emphasis bits
+    private static final int NUM_SYSTEM_COLORS = 0x40;
+    private static final double EMPHASIS_ATTENUATION = 0.75;
+    private static final int[][] packedSystemPalettes = new int[8][NUM_SYSTEM_COLORS];
+
+    static {
+        for (int emphasis = 0; emphasis < 8; emphasis++) {
+            for (int color = 0; color < NUM_SYSTEM_COLORS; color++) {
+                int rgbColor = 0;
+                for (int channel = 0; channel < 3; channel++) {
+                    // Emphasizing one channel dims the other two
+                    int value = systemPaletteColors[color][channel];
+                    if ((emphasis & ~(1 << channel)) != 0) {
+                        value = (int) (value * EMPHASIS_ATTENUATION);
+                    }
+                    rgbColor = (rgbColor << 8) | (value & 0xFF);
+                }
+                packedSystemPalettes[emphasis][color] = rgbColor;
+            }
+        }
+    }
+
+    // The 32 palette entries resolved to RGB for the current greyscale and emphasis settings. This is rebuilt lazily
+    // after a write to palette memory or a change to those PPU_MASK bits.
+    private static final int NUM_PALETTE_ENTRIES = 0x20;
+    private final int[] resolvedPalette = new int[NUM_PALETTE_ENTRIES];
+    private boolean paletteDirty;
+
     ConsoleMemory memory;
 
     public PPU(final ConsoleMemory consoleMemory) {
@@ -139,26 +187,15 @@ public class PPU extends Processor {
         scanlineNumber = 241;
         scanlineCycle = 0;
         cycleCount = 0;
+        frameCount = 0;
         evenFlag = true;
-        imageBuffer = new CircularBuffer(NUM_BUFFERED_IMAGES);
-        for (int i = 0; i < NUM_BUFFERED_IMAGES; i++) {
-            imageBuffer.push(new int[SCREEN_WIDTH * SCREEN_HEIGHT]);
-        }
-
-        generateNMI = true;
-        normalSpriteSize = true;
-        bgTableIndex = 0;
-        spriteTableAddressIndex = 0;
-        tableIncrementsIndex = 0;
-
-        green = false;
-        blue = false;
-        red = false;
-        showSprites = false;
-        showBG = false;
-        leftSprites = false;
-        leftBG = false;
-        greyscale = false;
+        frameBuffers = new FrameBufferPool(NUM_BUFFERED_IMAGES, SCREEN_WIDTH * SCREEN_HEIGHT, BLANK_PIXEL);
+        image = frameBuffers.startFrame();
+
+        // Both registers start out cleared, after that we decode them as they're written
+        decodeCtrl((byte) 0x0);
+        decodeMask((byte) 0x0);
+        paletteDirty = true;
 
         triggerVerticalBlank = false;
 
@@ -169,6 +206,27 @@ public class PPU extends Processor {
         highBGByte = 0x0;
 
         sprites = new Sprite[8]; // Eight sprites per line max
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = new Sprite();
+        }
+        numSprites = 0;
+
+        renderMode = RenderMode.DOT;
+        startScanline();
+        this.memory.setPPURegisterListener(this);
+    }
+
+    /**
+     * Choose how scanlines are rendered. The new mode takes effect from the next scanline.
+     *
+     * @param renderMode
+     */
+    public void setRenderMode(final RenderMode renderMode) {
+        this.renderMode = renderMode;
+    }
+
+    public RenderMode getRenderMode() {
+        return this.renderMode;
     }
 
     /**
@@ -191,9 +249,6 @@ public class PPU extends Processor {
      */
     @Override
     public void execute() {
-        readCtrl();
-        readMask();
-
         if (scanlineNumber == NUM_TOTAL_SCANLINES - 1) {
             preRenderScanline(scanlineCycle);
         } else if (scanlineNumber < NUM_VISIBLE_SCANLINES) {
@@ -206,6 +261,7 @@ public class PPU extends Processor {
         scanlineCycle = ++scanlineCycle % PPU_CYCLES_PER_SCANLINE;
         if (scanlineCycle == 0) {
             scanlineNumber = ++scanlineNumber % NUM_TOTAL_SCANLINES;
+            startScanline();
         }
         if (scanlineNumber == 0 && scanlineCycle == 1) {
             evenFlag = !evenFlag;
@@ -223,7 +279,7 @@ public class PPU extends Processor {
             this.memory.clearVblank();
             this.memory.clearSpriteZeroHit();
             this.memory.clearSpriteOverflow();
-            imageBuffer.push(new int[SCREEN_HEIGHT * SCREEN_WIDTH]);
+            image = frameBuffers.startFrame();
         }
         renderScanline(-1, scanlineCycle);
 
@@ -235,6 +291,7 @@ public class PPU extends Processor {
         if (scanlineCycle == PPU_CYCLES_PER_SCANLINE - 1 && !evenFlag) {
             this.scanlineCycle = 0;
             this.scanlineNumber = 0;
+            startScanline();
         }
     }
 
@@ -255,20 +312,67 @@ public class PPU extends Processor {
             return;
         }
 
+        // In scanline mode the visible part of the line is drawn in one go on its last cycle
+        if (!dotAccurateLine && Utilities.inRange(scanlineCycle, 1, SCREEN_WIDTH)) {
+            if (scanlineCycle == SCREEN_WIDTH) {
+                finishBatchScanline(scanlineNumber);
+            }
+            return;
+        }
+
+        fetchBackgroundTiles(scanlineCycle);
+
+        // Render if we're in the bounds of the main.java.screen
+        if (Utilities.inRange(scanlineNumber, 0, SCREEN_HEIGHT - 1)
+                && Utilities.inRange(scanlineCycle, 1, SCREEN_WIDTH)) {
+            renderPixel(scanlineCycle - 1, scanlineNumber);
+        }
+
+        shiftBackgroundTiles(scanlineCycle);
+
+        // Increment Vram main.java.memory vertical
+        if (scanlineCycle == 256) {
+            this.memory.incrementVertical();
+        }
+
+        if (scanlineCycle == 257) {
+            this.memory.copyHorizontal();
+
+            // Fetch the sprite data for the next scanline
+            if (scanlineNumber >= 0) {
+                numSprites = this.memory.fetchSprites(sprites, scanlineNumber + 1);
+                if (numSprites == sprites.length) {
+                    this.memory.setSpriteOverflow();
+                }
+                fetchSpritePatterns(scanlineNumber + 1);
+            } else {
+                // Sprites aren't evaluated on the pre-render line, so nothing is drawn on line 0
+                numSprites = 0;
+            }
+        }
+    }
+
+    /**
+     * Fetch the background tile data for this cycle and load it into the shift registers every 8 cycles.
+     *
+     * @param scanlineCycle
+     */
+    private void fetchBackgroundTiles(int scanlineCycle) {
         final int tileCycle = scanlineCycle % 8;
 
         if (Utilities.inRange(scanlineCycle, 1, 256) || Utilities.inRange(scanlineCycle, 321, 336)) {
             // Fetch background tiles
+            final int vramAddress = this.memory.getVramAddress();
             if (tileCycle == 0) {
                 this.memory.incrementHorizontal();
             } else if (tileCycle == 1) {
-                this.nameTableByte = fetchNameTableByte();
+                this.nameTableByte = fetchNameTableByte(vramAddress);
             } else if (tileCycle == 3) {
-                this.attributeTableByte = fetchAttributeTableByte();
+                this.attributeTableByte = fetchAttributeTableByte(vramAddress);
             } else if (tileCycle == 5) {
-                this.lowBGByte = fetchLowBGTileByte();
+                this.lowBGByte = fetchLowBGTileByte(this.nameTableByte, vramAddress);
             } else if (tileCycle == 7) {
-                this.highBGByte = fetchHighBGTileByte();
+                this.highBGByte = fetchHighBGTileByte(this.nameTableByte, vramAddress);
             }
         }
 
@@ -280,33 +384,195 @@ public class PPU extends Processor {
             this.bgTiles.loadLowBG(lowBGByte);
             this.bgTiles.loadAttributeTiles(attributeTableByte);
         }
+    }
 
-        // Render if we're in the bounds of the main.java.screen
-        if (Utilities.inRange(scanlineNumber, 0, SCREEN_HEIGHT - 1)
-                && Utilities.inRange(scanlineCycle, 1, SCREEN_WIDTH)) {
-            renderPixel(scanlineCycle - 1, scanlineNumber);
-        }
-
-        // Shift the background tiles
+    /**
+     * Shift the background tiles after a pixel would have been rendered on this cycle.
+     *
+     * @param scanlineCycle
+     */
+    private void shiftBackgroundTiles(int scanlineCycle) {
         if (Utilities.inRange(scanlineCycle, 1, 257) || Utilities.inRange(scanlineCycle, 321, 336)) {
             this.bgTiles.shift();
         }
+    }
 
-        // Increment Vram main.java.memory vertical
-        if (scanlineCycle == 256) {
-            this.memory.incrementVertical();
+    /**
+     * Reset the per-line rendering state at the start of every scanline.
+     */
+    private void startScanline() {
+        dotAccurateLine = renderMode == RenderMode.DOT;
+        lineTilesFetched = false;
+        renderedPixels = 0;
+    }
+
+    /**
+     * Whether the PPU is on a line that fetches background tiles (the visible lines and the pre-render line).
+     *
+     * @return
+     */
+    private boolean onRenderingScanline() {
+        return scanlineNumber < NUM_VISIBLE_SCANLINES || scanlineNumber == NUM_TOTAL_SCANLINES - 1;
+    }
+
+    /**
+     * The line number renderScanline() is called with for the current scanline (the pre-render line is -1).
+     *
+     * @return
+     */
+    private int renderedScanlineNumber() {
+        return scanlineNumber == NUM_TOTAL_SCANLINES - 1 ? -1 : scanlineNumber;
+    }
+
+    /**
+     * Whether pixels of the current line are still waiting on a batch render.
+     *
+     * @return
+     */
+    private boolean inBatchWindow() {
+        return !dotAccurateLine && onRenderingScanline() && Utilities.inRange(scanlineCycle, 1, SCREEN_WIDTH);
+    }
+
+    /**
+     * Finish a scanline in scanline mode on cycle 256. After rendering the rest of the line, we bring vramAddress to
+     * where 32 dot-by-dot tile fetches would have left it: coarse X goes all the way around (flipping the horizontal
+     * name table once) before the vertical increment.
+     *
+     * @param scanlineNumber
+     */
+    private void finishBatchScanline(int scanlineNumber) {
+        renderBatch(scanlineNumber, SCREEN_WIDTH);
+        for (int tile = 0; tile < SCREEN_WIDTH / 8; tile++) {
+            this.memory.incrementHorizontal();
         }
+        this.memory.incrementVertical();
+    }
 
-        if (scanlineCycle == 257) {
-            this.memory.copyHorizontal();
+    /**
+     * Render pixels [renderedPixels, toPixel) of a scanline from whole tile rows. The first two tiles were prefetched
+     * into the shift registers at the end of the previous line, and the rest are read starting at vramAddress, which
+     * is left untouched.
+     *
+     * @param scanlineNumber
+     * @param toPixel
+     */
+    private void renderBatch(int scanlineNumber, int toPixel) {
+        if (scanlineNumber < 0 || toPixel <= renderedPixels) {
+            renderedPixels = Math.max(renderedPixels, toPixel);
+            return;
+        }
+        if (!lineTilesFetched) {
+            fetchLineTiles();
+        }
 
-            // Fetch the sprite data for the next scanline
-            if (scanlineNumber >= 0) {
-                if (this.memory.fetchSprites(sprites, scanlineNumber + 1)) {
-                    this.memory.setSpriteOverflow();
-                }
+        final int fineX = this.memory.getFineXScroll();
+        for (int x = renderedPixels; x < toPixel; x++) {
+            // The pattern is offset by fine X, but like the shift registers the attribute only moves every 8 pixels
+            final int patternX = x + fineX;
+            final int tile = patternX >> 3;
+            final int shift = 7 - (patternX & 0x07);
+            final int bgLow = (lineTileLow[tile] >> shift) & 0x01;
+            final int bgHigh = (lineTileHigh[tile] >> shift) & 0x01;
+            final int bgPalettePixelIndex = ((lineTileAttribute[x >> 3] & 0x03) << 2) | (bgHigh << 1) | bgLow;
+
+            final boolean backgroundRendered = renderBackgroundPixel(x, scanlineNumber, bgPalettePixelIndex);
+            renderSpritePixel(x, scanlineNumber, backgroundRendered);
+        }
+        renderedPixels = toPixel;
+    }
+
+    /**
+     * Fill in the tile rows for the current scanline. The first two come from the shift registers and the rest are
+     * fetched by walking a copy of vramAddress across the name tables.
+     */
+    private void fetchLineTiles() {
+        for (int tile = 0; tile < 2; tile++) {
+            lineTileLow[tile] = this.bgTiles.getLowBGTile(tile);
+            lineTileHigh[tile] = this.bgTiles.getHighBGTile(tile);
+            lineTileAttribute[tile] = this.bgTiles.getAttributeTile(tile);
+        }
+
+        int vramAddress = this.memory.getVramAddress();
+        for (int tile = 2; tile < TILES_PER_LINE; tile++) {
+            final byte tileNameTableByte = fetchNameTableByte(vramAddress);
+            lineTileAttribute[tile] = fetchAttributeTableByte(vramAddress);
+            lineTileLow[tile] = fetchLowBGTileByte(tileNameTableByte, vramAddress);
+            lineTileHigh[tile] = fetchHighBGTileByte(tileNameTableByte, vramAddress);
+
+            // Same as incrementing coarse X in I/O register main.java.memory
+            if ((vramAddress & 0x001F) == 0x001F) {
+                vramAddress = (vramAddress & ~0x001F) ^ 0x0400;
+            } else {
+                vramAddress++;
+            }
+        }
+        lineTilesFetched = true;
+    }
+
+    /**
+     * Render everything up to the current cycle so that the CPU sees the sprite zero hit it would have in dot mode.
+     */
+    private void catchUpBatch() {
+        if (inBatchWindow() && !renderingDisabled()) {
+            renderBatch(renderedScanlineNumber(), scanlineCycle - 1);
+        }
+    }
+
+    /**
+     * The CPU is about to change state the rest of the line depends on, so render what we have so far and finish the
+     * line dot by dot. We replay the background fetches for the cycles already past (without drawing) so the shift
+     * registers and vramAddress are where dot mode would have left them.
+     */
+    private void fallBackToDotRendering() {
+        if (!inBatchWindow()) {
+            return;
+        }
+        if (!renderingDisabled()) {
+            renderBatch(renderedScanlineNumber(), scanlineCycle - 1);
+            for (int cycle = 1; cycle < scanlineCycle; cycle++) {
+                fetchBackgroundTiles(cycle);
+                shiftBackgroundTiles(cycle);
             }
         }
+        dotAccurateLine = true;
+    }
+
+    @Override
+    public void beforeRegisterRead(int register) {
+        if (register == IORegisterMemory.PPU_STATUS) {
+            catchUpBatch();
+        } else if (register == IORegisterMemory.PPU_DATA) {
+            fallBackToDotRendering();
+        }
+    }
+
+    @Override
+    public void beforeRegisterWrite(int register) {
+        switch (register) {
+            case IORegisterMemory.PPU_CTRL:
+            case IORegisterMemory.PPU_MASK:
+            case IORegisterMemory.PPU_SCROLL:
+            case IORegisterMemory.PPU_ADDRESS:
+            case IORegisterMemory.PPU_DATA:
+                fallBackToDotRendering();
+                break;
+            default:
+                break;
+        }
+
+        // Only after catching up, which resolves the palette as it was before this write
+        if (register == IORegisterMemory.PPU_DATA && (this.memory.getVramAddress() % 0x4000) >= PALETTE_OFFSET) {
+            paletteDirty = true;
+        }
+    }
+
+    @Override
+    public void afterRegisterWrite(int register, byte value) {
+        if (register == IORegisterMemory.PPU_CTRL) {
+            decodeCtrl(value);
+        } else if (register == IORegisterMemory.PPU_MASK) {
+            decodeMask(value);
+        }
     }
 
     /**
@@ -316,27 +582,29 @@ public class PPU extends Processor {
      * @param y
      */
     private void renderPixel(int x, int y) {
-        boolean backgroundRendered = renderBackgroundPixel(x, y);
+        final int bgPalettePixelIndex = this.bgTiles.getPixelIndex(this.memory.getFineXScroll());
+        boolean backgroundRendered = renderBackgroundPixel(x, y, bgPalettePixelIndex);
         renderSpritePixel(x, y, backgroundRendered);
     }
 
     /**
-     * Render a background pixel at (x, y). We return "true" if we've set the background to something non-transparent.
+     * Render a background pixel at (x, y) with the given background palette index. We return "true" if we've set the
+     * background to something non-transparent.
      *
      * @param x
      * @param y
+     * @param bgPalettePixelIndex
      * @return
      */
-    private boolean renderBackgroundPixel(int x, int y) {
+    private boolean renderBackgroundPixel(int x, int y, int bgPalettePixelIndex) {
         if (!showBG) {
             return false;
         }
 
         boolean backgroundRendered = false;
-        final int bgPalettePixelIndex = this.bgTiles.getPixelIndex(this.memory.getFineXScroll());
         final int bgRGB = getColorFromBackgroundPalette(bgPalettePixelIndex);
         if (!(x < 8 && !leftBG)) {
-            setPixelInImage(x, y, bgRGB, imageBuffer.peek());
+            setPixelInImage(x, y, bgRGB, image);
             backgroundRendered = !((bgPalettePixelIndex & 0x03) == 0x0);
         }
 
@@ -356,35 +624,22 @@ public class PPU extends Processor {
         }
 
         // Render sprites in order of lowest to highest priority (i.e. backwards)
-        for (int j = 7; j >= 0; j--) {
+        for (int j = numSprites - 1; j >= 0; j--) {
             final Sprite sprite = sprites[j];
 
             // Only render sprites if any of the sprite pixels overlap with our x
-            if (sprite == null || !((Utilities.inRange(x, sprite.x, sprite.x + 7)))) {
+            if (!Utilities.inRange(x, sprite.x, sprite.x + 7)) {
                 continue;
             }
 
-            int shiftY = (y - sprite.y) % 0x08;
-            if (sprite.flippedVertically()) {
-                shiftY = 7 - shiftY;
-            }
-
-            byte spriteLow = this.memory.readFromPPU(
-                    patternTableAddresses[spriteTableAddressIndex] + sprite.patternTableIndex * 0x10 + shiftY);
-            byte spriteHigh = this.memory.readFromPPU(
-                    patternTableAddresses[spriteTableAddressIndex] + sprite.patternTableIndex * 0x10 + shiftY + 0x08);
-
-            int deltaX = sprite.x + 7 - x; // A value between 0 and 7
-            int shiftX = sprite.flippedHorizontally() ? (7 - deltaX) : deltaX;
-            byte sLow = (byte) ((spriteLow >> shiftX) & 0x01);
-            byte sHigh = (byte) ((spriteHigh >> shiftX) & 0x01);
-            boolean spriteRendered = !(sHigh == 0x0 && sLow == 0x0);
+            final int spritePixel = sprite.getPatternPixel(x);
+            boolean spriteRendered = spritePixel != 0x0;
 
-            // Take the 2-bit attribute and concatenate with the sLow and sHigh like for the background
-            int spritePaletteIndex = ((sprite.attributes << 2) | (sHigh << 1) | sLow) & 0x0F;
+            // Take the 2-bit attribute and concatenate with the pattern pixel like for the background
+            int spritePaletteIndex = ((sprite.attributes << 2) | spritePixel) & 0x0F;
             int spriteRGB = getColorFromSpritePalette(spritePaletteIndex);
             if (shouldRenderSprite(spriteRendered, backgroundRendered, sprite.behindBackground())) {
-                setPixelInImage(x, y, spriteRGB, imageBuffer.peek());
+                setPixelInImage(x, y, spriteRGB, image);
             }
 
             // Check for a sprite-zero hit
@@ -394,6 +649,25 @@ public class PPU extends Processor {
         }
     }
 
+    /**
+     * Load the pattern row of each sprite fetched for a line, the same way the PPU fetches sprite tiles during cycles
+     * 257-320. Rendering then only needs to shift the bytes kept in the sprite.
+     *
+     * @param lineNumber
+     */
+    private void fetchSpritePatterns(int lineNumber) {
+        for (int i = 0; i < numSprites; i++) {
+            final Sprite sprite = sprites[i];
+            int row = (lineNumber - sprite.y) % 0x08;
+            if (sprite.flippedVertically()) {
+                row = 7 - row;
+            }
+
+            final int address = patternTableAddresses[spriteTableAddressIndex] + sprite.patternTableIndex * 0x10 + row;
+            sprite.setPattern(this.memory.readFromPPU(address), this.memory.readFromPPU(address + 0x08));
+        }
+    }
+
     /**
      * Whether or not we should render the sprite pixel. This is based on the following decision table:
      *
@@ -420,10 +694,24 @@ public class PPU extends Processor {
      * Returns the RGB color value given a palette index into the background palette
      */
     private int getColorFromBackgroundPalette(int paletteColorIndex) {
-        byte systemColorIndex = this.memory.readFromPPU(PALETTE_OFFSET + paletteColorIndex);
-        int[] rgb = systemPaletteColors[Utilities.toUnsignedValue(systemColorIndex) & 0x3F];
-        int rgbColor = rgb[0] << 16 & 0xFF0000 | rgb[1] << 8 & 0x00FF00 | rgb[2] & 0x0000FF;
-        return rgbColor;
+        if (paletteDirty) {
+            resolvePalette();
+        }
+        return resolvedPalette[paletteColorIndex];
+    }
+
+    /**
+     * Look up every palette entry in the packed system palette for the current emphasis. Greyscale keeps only the
+     * brightness bits of the system color index, like the hardware does.
+     */
+    private void resolvePalette() {
+        final int[] packedSystemPalette = packedSystemPalettes[colorEmphasis];
+        final int colorMask = greyscale ? 0x30 : 0x3F;
+        for (int i = 0; i < NUM_PALETTE_ENTRIES; i++) {
+            final int systemColorIndex = this.memory.readFromPPU(PALETTE_OFFSET + i) & colorMask;
+            resolvedPalette[i] = systemColorIndex << COLOR_INDEX_SHIFT | packedSystemPalette[systemColorIndex];
+        }
+        paletteDirty = false;
     }
 
     /**
@@ -437,22 +725,23 @@ public class PPU extends Processor {
     }
 
     /**
-     * Fetch the current name table byte using vramAddress
+     * Fetch the name table byte for a vramAddress
      *
+     * @param vramAddress
      * @return
      */
-    private byte fetchNameTableByte() {
-        int tileAddress = 0x2000 | (this.memory.getVramAddress() & 0x0FFF);
+    private byte fetchNameTableByte(int vramAddress) {
+        int tileAddress = 0x2000 | (vramAddress & 0x0FFF);
         return this.memory.readFromPPU(tileAddress);
     }
 
     /**
-     * Fetch the current attribute table byte using vramAddress
+     * Fetch the attribute table byte for a vramAddress
      *
+     * @param vramAddress
      * @return
      */
-    private byte fetchAttributeTableByte() {
-        int vramAddress = this.memory.getVramAddress();
+    private byte fetchAttributeTableByte(int vramAddress) {
         int attributeAddress = 0x23C0 | (vramAddress & 0x0C00) | ((vramAddress >> 4) & 0x38) | ((vramAddress >> 2) & 0x07);
         int tileSquare = ((vramAddress >> 4) & 0x04) + (vramAddress & 0x02); // Returns 0, 2, 4, or 6
 
@@ -461,27 +750,32 @@ public class PPU extends Processor {
 
     /**
      * Fetch the low BG tile byte. We do this by taking the name table byte as an offset from the pattern table
-     * (either 0x0000 or 0x1000). Then we use the fineYScroll to get the specific byte in our 8x8 tile.
+     * (either 0x0000 or 0x1000). Then we use the fineYScroll (the upper bits of vramAddress) to get the specific byte
+     * in our 8x8 tile.
      *
+     * @param nameTableByte
+     * @param vramAddress
      * @return
      */
-    private byte fetchLowBGTileByte() {
+    private byte fetchLowBGTileByte(byte nameTableByte, int vramAddress) {
         int patternTable = patternTableAddresses[bgTableIndex];
-        int fineYScroll = this.memory.getFineYScroll();
+        int fineYScroll = (vramAddress >> 12) & 0x0007;
         return this.memory.readFromPPU(
-                        patternTable + Utilities.toUnsignedValue(this.nameTableByte) * 0x10 + fineYScroll);
+                        patternTable + Utilities.toUnsignedValue(nameTableByte) * 0x10 + fineYScroll);
     }
 
     /**
      * Fetch the high BG tile byte
      *
+     * @param nameTableByte
+     * @param vramAddress
      * @return
      */
-    private byte fetchHighBGTileByte() {
+    private byte fetchHighBGTileByte(byte nameTableByte, int vramAddress) {
         int patternTable = patternTableAddresses[bgTableIndex];
-        int fineYScroll = this.memory.getFineYScroll();
+        int fineYScroll = (vramAddress >> 12) & 0x0007;
         return this.memory.readFromPPU(
-                        patternTable + Utilities.toUnsignedValue(this.nameTableByte) * 0x10 + fineYScroll + 0x08);
+                        patternTable + Utilities.toUnsignedValue(nameTableByte) * 0x10 + fineYScroll + 0x08);
     }
 
     /**
@@ -491,17 +785,164 @@ public class PPU extends Processor {
      */
     private void postRenderScanline(int scanlineCycle) {
         if (scanlineCycle == 1) {
+            frameBuffers.finishFrame();
+            frameCount++;
             this.memory.setVblank();
             triggerVerticalBlank = generateNMI;
         }
     }
 
-    public int[] getImage() {
-        return imageBuffer.get();
+    /**
+     * Returns the 6-bit system color index of a pixel in a frame from acquireImage().
+     *
+     * @param pixel
+     * @return
+     */
+    public static int colorIndexOf(final int pixel) {
+        return (pixel >>> COLOR_INDEX_SHIFT) & (NUM_SYSTEM_COLORS - 1);
+    }
+
+    /**
+     * Returns the packed RGB value of a system color index, without any color emphasis.
+     *
+     * @param colorIndex
+     * @return
+     */
+    public static int systemColorToRGB(final int colorIndex) {
+        return packedSystemPalettes[0][colorIndex & (NUM_SYSTEM_COLORS - 1)];
+    }
+
+    /**
+     * Returns the number of frames the PPU has finished, counted at the start of each VBLANK.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * How many cycles the PPU can run before the one that finishes the frame and sets VBLANK. When the frame has to
+     * wrap around, this assumes the odd frame cycle will be skipped, so it's never more than the real number.
+     *
+     * @return
+     */
+    public int cyclesUntilVerticalBlank() {
+        final int position = scanlineNumber * PPU_CYCLES_PER_SCANLINE + scanlineCycle;
+        final int verticalBlank = (NUM_VISIBLE_SCANLINES + 1) * PPU_CYCLES_PER_SCANLINE + 1;
+        if (position <= verticalBlank) {
+            return verticalBlank - position;
+        }
+        return NUM_TOTAL_SCANLINES * PPU_CYCLES_PER_SCANLINE - position + verticalBlank - 1;
+    }
+
+    /**
+     * Write where the PPU is in the frame, the decoded PPU_CTRL and PPU_MASK values, and the background and sprite
+     * fetch state into a save state. The frame buffers aren't saved, so after loading a state from the middle of a
+     * frame the lines drawn before it are missing from that one frame.
+     *
+     * @param buffer
+     */
+    public void saveState(final ByteBuffer buffer) {
+        buffer.putLong(cycleCount);
+        buffer.putLong(frameCount);
+        buffer.putShort((short) scanlineNumber);
+        buffer.putShort((short) scanlineCycle);
+        buffer.put(Utilities.toByte(evenFlag, triggerVerticalBlank, dotAccurateLine, lineTilesFetched));
+        buffer.putShort((short) renderedPixels);
+
+        buffer.put(Utilities.toByte(generateNMI, normalSpriteSize));
+        buffer.put((byte) bgTableIndex);
+        buffer.put((byte) spriteTableAddressIndex);
+        buffer.put((byte) tableIncrementsIndex);
+        buffer.put((byte) nameTableAddressIndex);
+        buffer.put((byte) colorEmphasis);
+        buffer.put(Utilities.toByte(showSprites, showBG, leftSprites, leftBG, greyscale));
+
+        bgTiles.saveState(buffer);
+        buffer.put(nameTableByte);
+        buffer.put(attributeTableByte);
+        buffer.put(lowBGByte);
+        buffer.put(highBGByte);
+        buffer.put(lineTileLow);
+        buffer.put(lineTileHigh);
+        buffer.put(lineTileAttribute);
+
+        buffer.put((byte) numSprites);
+        for (final Sprite sprite : sprites) {
+            sprite.saveState(buffer);
+        }
+    }
+
+    /**
+     * Read back the state written by saveState().
+     *
+     * @param buffer
+     */
+    public void loadState(final ByteBuffer buffer) {
+        cycleCount = buffer.getLong();
+        frameCount = buffer.getLong();
+        scanlineNumber = buffer.getShort();
+        scanlineCycle = buffer.getShort();
+        final byte positionFlags = buffer.get();
+        evenFlag = Utilities.bitAt(positionFlags, 0);
+        triggerVerticalBlank = Utilities.bitAt(positionFlags, 1);
+        dotAccurateLine = Utilities.bitAt(positionFlags, 2);
+        lineTilesFetched = Utilities.bitAt(positionFlags, 3);
+        renderedPixels = buffer.getShort();
+
+        final byte ctrlFlags = buffer.get();
+        generateNMI = Utilities.bitAt(ctrlFlags, 0);
+        normalSpriteSize = Utilities.bitAt(ctrlFlags, 1);
+        bgTableIndex = buffer.get();
+        spriteTableAddressIndex = buffer.get();
+        tableIncrementsIndex = buffer.get();
+        nameTableAddressIndex = buffer.get();
+        colorEmphasis = buffer.get();
+        final byte maskFlags = buffer.get();
+        showSprites = Utilities.bitAt(maskFlags, 0);
+        showBG = Utilities.bitAt(maskFlags, 1);
+        leftSprites = Utilities.bitAt(maskFlags, 2);
+        leftBG = Utilities.bitAt(maskFlags, 3);
+        greyscale = Utilities.bitAt(maskFlags, 4);
+
+        bgTiles.loadState(buffer);
+        nameTableByte = buffer.get();
+        attributeTableByte = buffer.get();
+        lowBGByte = buffer.get();
+        highBGByte = buffer.get();
+        buffer.get(lineTileLow);
+        buffer.get(lineTileHigh);
+        buffer.get(lineTileAttribute);
+
+        numSprites = buffer.get();
+        for (final Sprite sprite : sprites) {
+            sprite.loadState(buffer);
+        }
+
+        // The palette memory was loaded underneath us
+        paletteDirty = true;
+    }
+
+    /**
+     * Hold on to the last finished frame. Give it back with releaseImage() once you're done reading it so the buffer
+     * can be drawn into again.
+     *
+     * @return The last finished frame, or null if there isn't one yet
+     */
+    public int[] acquireImage() {
+        return frameBuffers.acquireFrame();
     }
 
     /**
-     * Read in and load the PPU_CTRL register's values into our local variables.
+     * Give back a frame from acquireImage().
+     *
+     * @param image
+     */
+    public void releaseImage(final int[] image) {
+        frameBuffers.releaseFrame(image);
+    }
+
+    /**
+     * Decode a value written to the PPU_CTRL register into our local variables.
      * The PPU_CTRL bits hold information regarding:
      * 0-1: Base nametable address
      * 2:   VRAM address increment
@@ -511,9 +952,7 @@ public class PPU extends Processor {
      * 6:   PPU master/slave select *Ignored for now*
      * 7:   Generate an NMI at start of the VBLANK
      */
-    private void readCtrl() {
-        final byte ctrl = memory.read(PPU_CTRL);
-
+    private void decodeCtrl(final byte ctrl) {
         nameTableAddressIndex = ctrl & 0x03;
         tableIncrementsIndex = (ctrl >> 2) & 0x01;
         spriteTableAddressIndex = (ctrl >> 3) & 0x01;
@@ -523,7 +962,7 @@ public class PPU extends Processor {
     }
 
     /**
-     * Read in and load the PPU_MASK register's values into our local variables.
+     * Decode a value written to the PPU_MASK register into our local variables.
      * The PPU_MASK bits hold information regarding:
      * 0: Greyscale
      * 1: Show background in left pixels
@@ -534,17 +973,20 @@ public class PPU extends Processor {
      * 6: Emphasize green
      * 7: Emphasize blue
      */
-    private void readMask() {
-        final byte mask = memory.read(PPU_MASK);
+    private void decodeMask(final byte mask) {
+        final boolean previousGreyscale = greyscale;
+        final int previousColorEmphasis = colorEmphasis;
 
         greyscale = Utilities.bitAt(mask, 0);
         leftBG = Utilities.bitAt(mask, 1);
         leftSprites = Utilities.bitAt(mask, 2);
         showBG = Utilities.bitAt(mask, 3);
         showSprites = Utilities.bitAt(mask, 4);
-        red = Utilities.bitAt(mask, 5);
-        green = Utilities.bitAt(mask, 6);
-        blue = Utilities.bitAt(mask, 7);
+        colorEmphasis = (mask >> 5) & 0x07;
+
+        if (greyscale != previousGreyscale || colorEmphasis != previousColorEmphasis) {
+            paletteDirty = true;
+        }
     }
 
     /**
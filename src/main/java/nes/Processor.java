@@ -15,9 +15,20 @@ public abstract class Processor {
         }
     }
 
+    /**
+     * The same as calling executeCycle() numCycles times, but cycles spent waiting on a surplus are skipped all at once.
+     */
     public final void executeCycles(int numCycles) {
-        for (int i = 0; i < numCycles; i++) {
-            this.executeCycle();
+        while (numCycles > 0) {
+            if (cycleCount > 0) {
+                final int waited = (int) Math.min(cycleCount, numCycles);
+                cycleCount -= waited;
+                numCycles -= waited;
+            } else {
+                cycleCount--;
+                this.execute();
+                numCycles--;
+            }
         }
     }
 
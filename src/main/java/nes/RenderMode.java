@@ -0,0 +1,11 @@
+package nes;
+
+/**
+ * The ways the PPU can produce a scanline. DOT renders one pixel per PPU cycle. SCANLINE renders a whole line of
+ * background and sprites at once and only drops back to DOT for the rest of a line when the CPU touches the PPU
+ * registers mid-line.
+ */
+public enum RenderMode {
+    DOT,
+    SCANLINE
+}
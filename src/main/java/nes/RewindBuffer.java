@@ -0,0 +1,155 @@
+package nes;
+
+import java.nio.ByteBuffer;
+import memory.CircularBuffer;
+
+/**
+ * Keeps the last frames of a Console's state so the game can be stepped backward one frame at a time, within a fixed
+ * number of bytes.
+ *
+ * We keep the full state of the newest frame, and for every frame before it only the XOR of its state with the state
+ * of the frame after it. Most of the state (CPU RAM, VRAM, cartridge RAM) doesn't change from one frame to the next,
+ * so these deltas are mostly zeros, and we store them with the runs of zeros squeezed out:
+ *
+ * 2 bytes: the number of zeros to skip
+ * 2 bytes: the number of bytes that follow
+ * The bytes that follow
+ *
+ * repeated until the end of the state. Stepping back XORs the newest delta onto the newest state, so the oldest
+ * deltas can be evicted to stay in the budget without affecting the rest.
+ */
+public class RewindBuffer {
+    private static final int MAX_RUN_LENGTH = 0xFFFF;
+    private static final int RUN_HEADER_SIZE = 4;
+    private static final int ARRAY_OVERHEAD = 16; // Roughly what the JVM adds on top of each byte[]
+
+    private final Console console;
+    private final CircularBuffer<byte[]> deltas;
+    private final ByteBuffer newestState;
+    private final ByteBuffer currentState;
+    private final byte[] deltaScratch;
+    private boolean hasNewestState;
+
+    /**
+     * @param console    The console to capture and rewind
+     * @param byteBudget The most bytes of history to keep
+     */
+    public RewindBuffer(final Console console, final long byteBudget) {
+        this.console = console;
+        this.deltas = new CircularBuffer<>(byteBudget - console.stateSize(), delta -> delta.length + ARRAY_OVERHEAD);
+        this.newestState = ByteBuffer.allocate(console.stateSize());
+        this.currentState = ByteBuffer.allocate(console.stateSize());
+        // Every run of literal bytes adds a header, so the worst case is one header per byte after a single zero
+        this.deltaScratch = new byte[console.stateSize() / 2 * (RUN_HEADER_SIZE + 1) + RUN_HEADER_SIZE + 1];
+        this.hasNewestState = false;
+    }
+
+    /**
+     * Save the console's current state as the newest frame. Call this once per frame, at the same point in every
+     * frame (e.g. the start of VBLANK), so stepping back is frame accurate.
+     */
+    public void capture() {
+        currentState.clear();
+        console.saveState(currentState);
+        if (hasNewestState) {
+            deltas.push(encodeDelta(currentState.array(), newestState.array()));
+        }
+        System.arraycopy(currentState.array(), 0, newestState.array(), 0, newestState.capacity());
+        hasNewestState = true;
+    }
+
+    /**
+     * Load the frame before the newest one into the console, and drop the newest one.
+     *
+     * @return false if there's no earlier frame left, in which case the console is left as it was
+     */
+    public boolean rewind() {
+        final byte[] delta = deltas.pop();
+        if (delta == null) {
+            return false;
+        }
+        applyDelta(delta, newestState.array());
+        newestState.clear();
+        console.loadState(newestState);
+        return true;
+    }
+
+    /**
+     * The number of frames we can step back.
+     *
+     * @return
+     */
+    public int size() {
+        return deltas.size();
+    }
+
+    /**
+     * The number of bytes the history takes up, including the newest state.
+     *
+     * @return
+     */
+    public long totalBytes() {
+        return deltas.totalBytes() + (hasNewestState ? newestState.capacity() : 0);
+    }
+
+    /**
+     * Forget all history, e.g. after loading a different save state.
+     */
+    public void clear() {
+        deltas.clear();
+        hasNewestState = false;
+    }
+
+    /**
+     * Encode the XOR of two states of the same size with the runs of zeros removed.
+     *
+     * @return The encoded delta
+     */
+    private byte[] encodeDelta(final byte[] state, final byte[] previousState) {
+        int size = 0;
+        int i = 0;
+        while (i < state.length) {
+            final int zerosStart = i;
+            while (i < state.length && i - zerosStart < MAX_RUN_LENGTH && state[i] == previousState[i]) {
+                i++;
+            }
+            final int literalsStart = i;
+            while (i < state.length && i - literalsStart < MAX_RUN_LENGTH && state[i] != previousState[i]) {
+                i++;
+            }
+
+            size = putRunLength(size, literalsStart - zerosStart);
+            size = putRunLength(size, i - literalsStart);
+            for (int j = literalsStart; j < i; j++) {
+                deltaScratch[size++] = (byte) (state[j] ^ previousState[j]);
+            }
+        }
+
+        final byte[] delta = new byte[size];
+        System.arraycopy(deltaScratch, 0, delta, 0, size);
+        return delta;
+    }
+
+    private int putRunLength(int position, final int runLength) {
+        deltaScratch[position++] = (byte) (runLength >> 8);
+        deltaScratch[position++] = (byte) runLength;
+        return position;
+    }
+
+    /**
+     * XOR an encoded delta onto a state.
+     */
+    private static void applyDelta(final byte[] delta, final byte[] state) {
+        int position = 0;
+        int i = 0;
+        while (position < delta.length) {
+            final int zeros = ((delta[position] & 0xFF) << 8) | (delta[position + 1] & 0xFF);
+            final int literals = ((delta[position + 2] & 0xFF) << 8) | (delta[position + 3] & 0xFF);
+            position += RUN_HEADER_SIZE;
+            i += zeros;
+            for (int j = 0; j < literals; j++) {
+                state[i++] ^= delta[position++];
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package nes;
+
+import memory.ConsoleMemory;
+import memory.PPURegisterListener;
+
+/**
+ * Keeps the CPU and PPU in step: the PPU runs three cycles for every CPU cycle, like the NES. This is the one place
+ * that decides when each of them runs.
+ *
+ * The CPU does all of an instruction's work on its first cycle and then idles for the rest of it (see Processor). So
+ * rather than clocking both processors one cycle at a time, step() runs a whole instruction and leaves the PPU idle,
+ * only noting the cycles it owes. The PPU catches up on them all at once (sync()) right before the CPU could notice
+ * the difference:
+ *
+ * - Before the CPU reads or writes a PPU register, including $2002 (VBLANK and sprite zero hit). The scheduler sits in
+ *   front of the PPU's register listener to do this.
+ * - Before OAM DMA copies into sprite memory.
+ * - Around the end of the frame. The PPU says how far off VBLANK is, and any step that could reach it is run with the
+ *   PPU caught up to every instruction, checking for an NMI after the instruction and the cycles before it.
+ *
+ * So the CPU sees exactly what it would have with executeCycle() every cycle, frames finish in the same step they
+ * would have, and most instructions don't touch the PPU at all.
+ *
+ * While the PPU is left behind, a step keeps going through any hot BasicBlocks it lands on, as long as the most
+ * cycles the block could take can't reach VBLANK. Each instruction in a block still counts its own cycles, so a
+ * register access partway through catches the PPU up to that exact instruction. Blocks that keep running are compiled
+ * into JVM classes of their own (see BlockCompiler), and any that aren't, or can't be, run their Operations in turn.
+ */
+public class Scheduler implements PPURegisterListener {
+    public static final int PPU_CYCLES_PER_CPU_CYCLE = 3;
+
+    private final CPU cpu;
+    private final PPU ppu;
+    private final ConsoleMemory memory;
+    private final BlockCompiler blockCompiler;
+    private int owedPPUCycles; // Run by the CPU but not by the PPU yet
+    private int ppuCyclesUntilVerticalBlank; // As of the last sync
+
+    public Scheduler(final CPU cpu, final PPU ppu, final ConsoleMemory memory) {
+        this.cpu = cpu;
+        this.ppu = ppu;
+        this.memory = memory;
+        this.blockCompiler = new BlockCompiler(this);
+        this.memory.setPPURegisterListener(this);
+        resynchronize();
+    }
+
+    /**
+     * Clock the console once: three PPU cycles, then one CPU cycle. If the PPU entered VBLANK with NMIs enabled we
+     * start the NMI on the CPU.
+     *
+     * @return true if an NMI was triggered, which is when a finished frame is ready to be displayed
+     */
+    public boolean executeCycle() {
+        sync();
+        final boolean triggeredNMI = executeCycleInStep();
+        ppuCyclesUntilVerticalBlank = this.ppu.cyclesUntilVerticalBlank();
+        return triggeredNMI;
+    }
+
+    /**
+     * Run up to and including the CPU's next instruction (or OAM DMA). Unless the step could finish the frame, the PPU
+     * is left behind to catch up later.
+     *
+     * @return The number of CPU cycles run
+     */
+    public int step() {
+        final int idleCycles = (int) Math.max(this.cpu.cycleCount, 0);
+        final int ppuCycles = PPU_CYCLES_PER_CPU_CYCLE * (idleCycles + 1);
+        if (owedPPUCycles + ppuCycles <= ppuCyclesUntilVerticalBlank && !this.memory.dma()) {
+            owedPPUCycles += ppuCycles;
+            this.cpu.executeCycles(idleCycles + 1);
+            return idleCycles + 1 + runHotBlocks();
+        }
+
+        sync();
+        if (idleCycles > 0) {
+            this.ppu.executeCycles(PPU_CYCLES_PER_CPU_CYCLE * idleCycles);
+            this.cpu.executeCycles(idleCycles);
+            checkVerticalBlank();
+        }
+        executeCycleInStep();
+        ppuCyclesUntilVerticalBlank = this.ppu.cyclesUntilVerticalBlank();
+        return idleCycles + 1;
+    }
+
+    /**
+     * Run until the PPU has finished the frame it's on, which is at the start of VBLANK.
+     *
+     * @return The number of CPU cycles run
+     */
+    public long runFrame() {
+        final long frameCount = this.ppu.getFrameCount();
+        long cycles = 0;
+        while (this.ppu.getFrameCount() == frameCount) {
+            cycles += step();
+        }
+        return cycles;
+    }
+
+    /**
+     * Run hot blocks one after another, with the PPU left behind, until we land somewhere without one or the next one
+     * might reach VBLANK.
+     *
+     * @return The number of CPU cycles run
+     */
+    private int runHotBlocks() {
+        int cycles = 0;
+        BasicBlock block = this.cpu.hotBlock();
+        while (block != null && !this.memory.dma()) {
+            final int idleCycles = (int) Math.max(this.cpu.cycleCount, 0);
+            if (owedPPUCycles + PPU_CYCLES_PER_CPU_CYCLE * (idleCycles + block.maxCycles) > ppuCyclesUntilVerticalBlank) {
+                break;
+            }
+            if (block.compiled == null && ++block.runCount == BlockCompiler.COMPILE_RUN_COUNT) {
+                block.compiled = blockCompiler.compile(block);
+            }
+            cycles += block.compiled != null ? block.compiled.run(this.cpu) : runBlock(block);
+            block = this.cpu.hotBlock();
+        }
+        return cycles;
+    }
+
+    /**
+     * Run the instructions in a block, cycle for cycle as if each were its own step(). We stop early if an instruction
+     * starts OAM DMA, which needs the PPU caught up, or rewrites the block.
+     *
+     * @return The number of CPU cycles run
+     */
+    private int runBlock(final BasicBlock block) {
+        int cycles = 0;
+        for (int i = 0; i < block.operations.length; i++) {
+            final int instructionCycles = (int) Math.max(this.cpu.cycleCount, 0) + 1;
+            owePPUCycles(instructionCycles);
+            this.cpu.cycleCount -= instructionCycles;
+            this.cpu.operand = block.operands[i];
+            block.operations[i].execute(this.cpu);
+            cycles += instructionCycles;
+            if (this.memory.dma() || !block.valid) {
+                break;
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Leave the PPU behind by the cycles the CPU just ran.
+     *
+     * @param cpuCycles
+     */
+    void owePPUCycles(final int cpuCycles) {
+        owedPPUCycles += PPU_CYCLES_PER_CPU_CYCLE * cpuCycles;
+    }
+
+    /**
+     * Run the PPU through the cycles it owes, so it's at the same point as the CPU.
+     */
+    public void sync() {
+        if (owedPPUCycles > 0) {
+            this.ppu.executeCycles(owedPPUCycles);
+            ppuCyclesUntilVerticalBlank -= owedPPUCycles;
+            owedPPUCycles = 0;
+        }
+    }
+
+    /**
+     * Forget any owed cycles, after the CPU and PPU have been loaded from a save state (which is always in sync).
+     */
+    public void resynchronize() {
+        owedPPUCycles = 0;
+        ppuCyclesUntilVerticalBlank = this.ppu.cyclesUntilVerticalBlank();
+    }
+
+    @Override
+    public void beforeRegisterRead(int register) {
+        sync();
+        this.ppu.beforeRegisterRead(register);
+    }
+
+    @Override
+    public void beforeRegisterWrite(int register) {
+        sync();
+        this.ppu.beforeRegisterWrite(register);
+    }
+
+    @Override
+    public void afterRegisterWrite(int register, byte value) {
+        this.ppu.afterRegisterWrite(register, value);
+    }
+
+    /**
+     * One cycle with the PPU in step, as in executeCycle().
+     */
+    private boolean executeCycleInStep() {
+        this.ppu.executeCycles(PPU_CYCLES_PER_CPU_CYCLE);
+        this.cpu.executeCycle();
+        return checkVerticalBlank();
+    }
+
+    private boolean checkVerticalBlank() {
+        if (this.ppu.triggerVerticalBlank) {
+            this.cpu.triggerInterrupt(Interrupt.NMI);
+            this.ppu.triggerVerticalBlank = false;
+            return true;
+        }
+        return false;
+    }
+}
@@ -17,7 +17,7 @@ abstract class AddWithCarryOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         byte oldAValue = cpu.A.readAsByte();
         boolean carryFlag = cpu.A.addByte(value, cpu.P.carryFlag());
         boolean overflowFlag = Utilities.getOverflowFlag(oldAValue, value, carryFlag);
@@ -35,17 +35,7 @@ abstract class AddWithCarryOperationBase extends Operation {
             cpu.P.clearCarryFlag();
         }
 
-        if (cpu.A.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -85,8 +75,7 @@ class AddWithCarryAbsoluteX extends AddWithCarryOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.X.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -101,8 +90,7 @@ class AddWithCarryAbsoluteY extends AddWithCarryOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -123,10 +111,7 @@ class AddWithCarryIndirectY extends AddWithCarryOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        int targetAddress = Utilities.toUnsignedValue(bytes[0]);
-        byte low = cpu.memory.read(targetAddress);
-        if (Utilities.getOverflowFlag(low, cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -6,6 +6,12 @@ import nes.CPU;
  * Stateless utilities class that is used in conjunction with Operations to
  * retrieve specific bytes for various addressing modes
  *
+ * The CPU reads an instruction's operand bytes into cpu.operand before it runs
+ * (or keeps them from the last time, see InstructionCache), so decoding an
+ * instruction never allocates or reads them again. The indexed modes (Absolute,X, Absolute,Y and
+ * Indirect,Y) record whether indexing crossed a page in cpu.pageCrossed so
+ * operations can add their extra cycle without decoding the operand again.
+ *
  */
 public final class AddressingModeUtilities {
     private AddressingModeUtilities() {}
@@ -15,21 +21,21 @@ public final class AddressingModeUtilities {
      *
      * @param addressingMode
      * @param cpu
-     * @param bytes
      * @return
      */
-    public static int getAddress(AddressingMode addressingMode, CPU cpu, byte[] bytes) {
+    public static int getAddress(AddressingMode addressingMode, CPU cpu) {
+        cpu.pageCrossed = false;
 
         switch (addressingMode) {
-            case ZeroPage:  return getAddressZeroPage(bytes);
-            case ZeroPageX: return getAddressZeroPageX(cpu, bytes);
-            case ZeroPageY: return getAddressZeroPageY(cpu, bytes);
-            case Absolute:  return getAddressAbsolute(bytes);
-            case AbsoluteX: return getAddressAbsoluteX(cpu, bytes);
-            case AbsoluteY: return getAddressAbsoluteY(cpu, bytes);
-            case Indirect:  return getAddressAbsolute(bytes);
-            case IndirectX: return getAddressIndirectX(cpu, bytes);
-            case IndirectY: return getAddressIndirectY(cpu, bytes);
+            case ZeroPage:  return getAddressZeroPage(cpu);
+            case ZeroPageX: return getAddressZeroPageX(cpu);
+            case ZeroPageY: return getAddressZeroPageY(cpu);
+            case Absolute:  return getAddressAbsolute(cpu);
+            case AbsoluteX: return getAddressAbsoluteX(cpu);
+            case AbsoluteY: return getAddressAbsoluteY(cpu);
+            case Indirect:  return getAddressAbsolute(cpu);
+            case IndirectX: return getAddressIndirectX(cpu);
+            case IndirectY: return getAddressIndirectY(cpu);
         }
 
         try {
@@ -46,21 +52,21 @@ public final class AddressingModeUtilities {
      *
      * @param addressingMode
      * @param cpu
-     * @param bytes
      * @return
      */
-    public static byte getValue(AddressingMode addressingMode, CPU cpu, byte[] bytes) {
+    public static byte getValue(AddressingMode addressingMode, CPU cpu) {
+        cpu.pageCrossed = false;
 
         switch (addressingMode) {
-            case Immediate: return getValueImmediate(cpu, bytes);
-            case ZeroPage:  return getValueZeroPage(cpu, bytes);
-            case ZeroPageX: return getValueZeroPageX(cpu, bytes);
-            case ZeroPageY: return getValueZeroPageY(cpu, bytes);
-            case Absolute:  return getValueAbsolute(cpu, bytes);
-            case AbsoluteX: return getValueAbsoluteX(cpu, bytes);
-            case AbsoluteY: return getValueAbsoluteY(cpu, bytes);
-            case IndirectX: return getValueIndirectX(cpu, bytes);
-            case IndirectY: return getValueIndirectY(cpu, bytes);
+            case Immediate: return getValueImmediate(cpu);
+            case ZeroPage:  return getValueZeroPage(cpu);
+            case ZeroPageX: return getValueZeroPageX(cpu);
+            case ZeroPageY: return getValueZeroPageY(cpu);
+            case Absolute:  return getValueAbsolute(cpu);
+            case AbsoluteX: return getValueAbsoluteX(cpu);
+            case AbsoluteY: return getValueAbsoluteY(cpu);
+            case IndirectX: return getValueIndirectX(cpu);
+            case IndirectY: return getValueIndirectY(cpu);
         }
 
         try {
@@ -72,26 +78,60 @@ public final class AddressingModeUtilities {
         return 0;
     }
 
+    /**
+     * Read the single operand byte following the opcode as an unsigned value.
+     *
+     * @param cpu
+     * @return
+     */
+    private static int readOperandByte(CPU cpu) {
+        return cpu.operand & 0xFF;
+    }
+
+    /**
+     * Read the two operand bytes following the opcode (LSB then MSB) as an
+     * unsigned 16-bit address.
+     *
+     * @param cpu
+     * @return
+     */
+    private static int readOperandWord(CPU cpu) {
+        return cpu.operand;
+    }
+
+    /**
+     * Add an index register to a base address and flag the CPU if the result
+     * lands on a different page.
+     *
+     * @param cpu
+     * @param baseAddress
+     * @param index
+     * @return
+     */
+    private static int indexAddress(CPU cpu, int baseAddress, byte index) {
+        final int targetAddress = (Utilities.addUnsignedByteToInt(baseAddress, index)) & 0xFFFF;
+        cpu.pageCrossed = !Utilities.samePage(baseAddress, targetAddress);
+        return targetAddress;
+    }
+
     /**
      * Immediate addressing mode: (e.g. LDA #$3e --> Load accumulator with 62)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueImmediate(CPU cpu, byte[] bytes) {
-        return bytes[0];
+    private static byte getValueImmediate(CPU cpu) {
+        return (byte) cpu.operand;
     }
 
     /**
-     * Return the address (on the zero page) according to the bytes read from a
+     * Return the address (on the zero page) according to the byte read from a
      * zero-page addressing mode instruction
      *
-     * @param bytes
      * @return
      */
-    private static int getAddressZeroPage(byte[] bytes) {
-        return Utilities.toUnsignedValue(bytes[0]);
+    private static int getAddressZeroPage(CPU cpu) {
+        return readOperandByte(cpu);
     }
 
     /**
@@ -99,22 +139,20 @@ public final class AddressingModeUtilities {
      * value in $02)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueZeroPage(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressZeroPage(bytes));
+    private static byte getValueZeroPage(CPU cpu) {
+        return cpu.memory.read(getAddressZeroPage(cpu));
     }
 
     /**
      * Return the zero page address with the value of X added to it.
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static int getAddressZeroPageX(CPU cpu, byte[] bytes) {
-        return Utilities.toUnsignedValue((byte) (bytes[0] + cpu.X.readAsByte()));
+    private static int getAddressZeroPageX(CPU cpu) {
+        return (readOperandByte(cpu) + cpu.X.read()) & 0x00FF;
     }
 
     /**
@@ -122,22 +160,20 @@ public final class AddressingModeUtilities {
      * at $($04 + X))
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueZeroPageX(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressZeroPageX(cpu, bytes));
+    private static byte getValueZeroPageX(CPU cpu) {
+        return cpu.memory.read(getAddressZeroPageX(cpu));
     }
 
     /**
      * Return the zero page address with the value of Y added to it.
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static int getAddressZeroPageY(CPU cpu, byte[] bytes) {
-        return Utilities.toUnsignedValue((byte) (bytes[0] + cpu.Y.readAsByte()));
+    private static int getAddressZeroPageY(CPU cpu) {
+        return (readOperandByte(cpu) + cpu.Y.read()) & 0x00FF;
     }
 
     /**
@@ -145,43 +181,39 @@ public final class AddressingModeUtilities {
      * at $($04 + Y))
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueZeroPageY(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressZeroPageY(cpu, bytes));
+    private static byte getValueZeroPageY(CPU cpu) {
+        return cpu.memory.read(getAddressZeroPageY(cpu));
     }
     /**
-     * Return the total 16-bit absolute address from concatenating the bytes
+     * Return the total 16-bit absolute address from concatenating the operand bytes
      *
-     * @param bytes
      * @return
      */
-    private static int getAddressAbsolute(byte[] bytes) {
-        return Utilities.toUnsignedValue(bytes[1], bytes[0]);
+    private static int getAddressAbsolute(CPU cpu) {
+        return readOperandWord(cpu);
     }
 
     /**
      * Absolute addressing mode: (e.g. JMP #$3249 --> Set PC to #$3249)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueAbsolute(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressAbsolute(bytes));
+    private static byte getValueAbsolute(CPU cpu) {
+        return cpu.memory.read(getAddressAbsolute(cpu));
     }
 
     /**
-     * Add an absolute address from the bytes to the X register value to get a
-     * target address.
+     * Add an absolute address from the operand bytes to the X register value to
+     * get a target address.
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static int getAddressAbsoluteX(CPU cpu, byte[] bytes) {
-        return Utilities.addUnsignedByteToInt(Utilities.toUnsignedValue(bytes[1], bytes[0]), cpu.X.readAsByte());
+    private static int getAddressAbsoluteX(CPU cpu) {
+        return indexAddress(cpu, readOperandWord(cpu), cpu.X.readAsByte());
     }
 
     /**
@@ -189,23 +221,21 @@ public final class AddressingModeUtilities {
      * at $($3000 + X))
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueAbsoluteX(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressAbsoluteX(cpu, bytes));
+    private static byte getValueAbsoluteX(CPU cpu) {
+        return cpu.memory.read(getAddressAbsoluteX(cpu));
     }
 
     /**
-     * Add an absolute address from the bytes to the Y register value to get a
-     * target address.
+     * Add an absolute address from the operand bytes to the Y register value to
+     * get a target address.
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static int getAddressAbsoluteY(CPU cpu, byte[] bytes) {
-        return Utilities.addUnsignedByteToInt(Utilities.toUnsignedValue(bytes[1], bytes[0]), cpu.Y.readAsByte());
+    private static int getAddressAbsoluteY(CPU cpu) {
+        return indexAddress(cpu, readOperandWord(cpu), cpu.Y.readAsByte());
     }
 
     /**
@@ -213,11 +243,10 @@ public final class AddressingModeUtilities {
      * at $($3000 + Y)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueAbsoluteY(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressAbsoluteY(cpu, bytes));
+    private static byte getValueAbsoluteY(CPU cpu) {
+        return cpu.memory.read(getAddressAbsoluteY(cpu));
     }
 
     /**
@@ -226,11 +255,10 @@ public final class AddressingModeUtilities {
      * LSB,MSB pair that contains the target address.
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static int getAddressIndirectX(CPU cpu, byte[] bytes) {
-        final int targetAddress = Utilities.toUnsignedValue((byte) (bytes[0] + cpu.X.readAsByte()));
+    private static int getAddressIndirectX(CPU cpu) {
+        final int targetAddress = (readOperandByte(cpu) + cpu.X.read()) & 0x00FF;
         final byte low = cpu.memory.read(targetAddress);
         final byte high;
         // Zero-Page wrap around
@@ -249,11 +277,10 @@ public final class AddressingModeUtilities {
      * value.)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueIndirectX(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressIndirectX(cpu, bytes));
+    private static byte getValueIndirectX(CPU cpu) {
+        return cpu.memory.read(getAddressIndirectX(cpu));
     }
 
     /**
@@ -261,10 +288,9 @@ public final class AddressingModeUtilities {
      * byte, then add Y to the concatenated target to obtain the final address.
      *
      * @param cpu
-     * @param bytes
      */
-    private static int getAddressIndirectY(CPU cpu, byte[] bytes) {
-        final int targetAddress = Utilities.toUnsignedValue(bytes[0]);
+    private static int getAddressIndirectY(CPU cpu) {
+        final int targetAddress = readOperandByte(cpu);
         final byte low = cpu.memory.read(targetAddress);
         final byte high;
         // Zero-Page wrap around
@@ -275,7 +301,7 @@ public final class AddressingModeUtilities {
         }
 
         final int concatenatedTarget = Utilities.toUnsignedValue(high, low);
-        return Utilities.addUnsignedByteToInt(concatenatedTarget, cpu.Y.readAsByte());
+        return indexAddress(cpu, concatenatedTarget, cpu.Y.readAsByte());
     }
 
     /**
@@ -285,10 +311,9 @@ public final class AddressingModeUtilities {
      * main.java.memory.)
      *
      * @param cpu
-     * @param bytes
      * @return
      */
-    private static byte getValueIndirectY(CPU cpu, byte[] bytes) {
-        return cpu.memory.read(getAddressIndirectY(cpu, bytes));
+    private static byte getValueIndirectY(CPU cpu) {
+        return cpu.memory.read(getAddressIndirectY(cpu));
     }
 }
@@ -19,8 +19,8 @@ abstract class ArithmeticShiftLeftOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
-        int address = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int address = AddressingModeUtilities.getAddress(addressingMode, cpu);
+        byte value = cpu.memory.read(address);
         byte result = Utilities.bitShift(value, -1);
         cpu.memory.write(address, Utilities.bitShift(value, -1));
 
@@ -31,17 +31,7 @@ abstract class ArithmeticShiftLeftOperationBase extends Operation {
             cpu.P.clearCarryFlag();
         }
 
-        if (result == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (result < 0) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(result);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -65,17 +55,7 @@ class ArithmeticShiftLeftImplicit extends ArithmeticShiftLeftOperationBase {
             cpu.P.clearCarryFlag();
         }
 
-        if (cpu.A.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
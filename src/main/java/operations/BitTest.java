@@ -18,7 +18,7 @@ abstract class BitTestOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         boolean zeroFlagSet = (cpu.A.readAsByte() & value) == 0;
 
         // Set the processor status flags
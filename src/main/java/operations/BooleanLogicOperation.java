@@ -16,21 +16,11 @@ public abstract class BooleanLogicOperation extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         operation(cpu, value);
 
         // Set the processor status flags
-        if (cpu.A.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
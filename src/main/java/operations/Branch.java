@@ -12,7 +12,7 @@ public abstract class Branch extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(AddressingMode.Immediate, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(AddressingMode.Immediate, cpu);
         cpu.PC.incrementBy(this.numBytes);
 
         if (branchCondition(cpu)) {
@@ -36,4 +36,9 @@ public abstract class Branch extends Operation {
      * @return
      */
     protected abstract boolean branchCondition(CPU cpu);
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
@@ -26,6 +26,11 @@ class BreakImplicit extends Operation {
 
         cpu.cycleCount += cycles;
     }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
 
 public class Break extends Instruction {
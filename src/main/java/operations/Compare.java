@@ -18,10 +18,9 @@ abstract class CompareOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         byte subtraction = (byte) (cpu.A.read() - value);
         boolean carryFlag = (cpu.A.read() >= Utilities.toUnsignedValue(value));
-        boolean negativeFlag = subtraction < 0;
 
         // Set the processor status flags
         if (carryFlag) {
@@ -30,17 +29,7 @@ abstract class CompareOperationBase extends Operation {
             cpu.P.clearCarryFlag();
         }
 
-        if (subtraction == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (negativeFlag) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(subtraction);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -80,8 +69,7 @@ class CompareAbsoluteX extends CompareOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.X.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -96,8 +84,7 @@ class CompareAbsoluteY extends CompareOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -118,10 +105,7 @@ class CompareIndirectY extends CompareOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        int targetAddress = Utilities.toUnsignedValue(bytes[0]);
-        byte low = cpu.memory.read(targetAddress);
-        if (Utilities.getOverflowFlag(low, cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -18,10 +18,9 @@ abstract class CompareXOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         byte subtraction = (byte) (cpu.X.read() - value);
         boolean carryFlag = (cpu.X.read() >= Utilities.toUnsignedValue(value));
-        boolean negativeFlag = subtraction < 0;
 
         // Set the processor status flags
         if (carryFlag) {
@@ -30,17 +29,7 @@ abstract class CompareXOperationBase extends Operation {
             cpu.P.clearCarryFlag();
         }
 
-        if (subtraction == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (negativeFlag) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(subtraction);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
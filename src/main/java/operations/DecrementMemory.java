@@ -15,24 +15,13 @@ abstract class DecrementMemoryOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
-        int address = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int address = AddressingModeUtilities.getAddress(addressingMode, cpu);
+        byte value = cpu.memory.read(address);
         value = (byte) (value - (byte) 0x01);
         cpu.memory.write(address, value);
-        boolean negativeFlag = value < 0;
 
         // Set the processor status flags
-        if (value == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (negativeFlag) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(value);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -19,17 +19,7 @@ class DecrementYImplicit extends Operation {
         byte value = cpu.Y.readAsByte();
 
         // Set the processor status flags
-        if (value == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (value < 0) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(value);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
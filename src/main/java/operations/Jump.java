@@ -15,7 +15,7 @@ abstract class JumpOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        int targetAddress = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int targetAddress = AddressingModeUtilities.getAddress(addressingMode, cpu);
 
         if (addressingMode == AddressingMode.Indirect) {
             byte lsb = cpu.memory.read(targetAddress);
@@ -32,6 +32,11 @@ abstract class JumpOperationBase extends Operation {
 
         cpu.cycleCount += cycles;
     }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
 
 class JumpIndirect extends JumpOperationBase {
@@ -16,7 +16,7 @@ class JumpToSubroutineImplicit extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        int targetAddress = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int targetAddress = AddressingModeUtilities.getAddress(addressingMode, cpu);
         cpu.PC.incrementBy(numBytes - 1);
         cpu.pushPCOntoStack();
 
@@ -24,6 +24,11 @@ class JumpToSubroutineImplicit extends Operation {
 
         cpu.cycleCount += cycles;
     }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
 
 public class JumpToSubroutine extends Instruction {
@@ -15,21 +15,11 @@ abstract class LoadAccumulatorOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         cpu.A.writeByte(value);
 
         // Set the processor status flags
-        if (cpu.A.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -69,8 +59,7 @@ class LoadAccumulatorAbsoluteX extends LoadAccumulatorOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.X.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -85,8 +74,7 @@ class LoadAccumulatorAbsoluteY extends LoadAccumulatorOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -96,18 +84,6 @@ class LoadAccumulatorIndirectX extends LoadAccumulatorOperationBase {
     public LoadAccumulatorIndirectX(AddressingMode addressMode, byte opcode, int numBytes, int cycles) {
         super(addressMode, opcode, numBytes, cycles);
     }
-
-    @Override
-    public void execute(CPU cpu) {
-        super.execute(cpu);
-
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        int targetAddress = Utilities.toUnsignedValue(bytes[0]);
-        byte low = cpu.memory.read(targetAddress);
-        if (Utilities.getOverflowFlag(low, cpu.X.readAsByte(), false)) {
-            cpu.cycleCount++;
-        }
-    }
 }
 
 class LoadAccumulatorIndirectY extends LoadAccumulatorOperationBase {
@@ -117,9 +93,9 @@ class LoadAccumulatorIndirectY extends LoadAccumulatorOperationBase {
 
     @Override
     public void execute(CPU cpu) {
-        final int originalAddress = cpu.PC.read();
         super.execute(cpu);
-        if (!Utilities.samePage(originalAddress, cpu.PC.read())) {
+
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
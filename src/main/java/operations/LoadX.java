@@ -15,21 +15,11 @@ abstract class LoadXOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        byte value = AddressingModeUtilities.getValue(addressingMode, cpu);
         cpu.X.writeByte(value);
 
         // Set the processor status flags
-        if (cpu.X.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.X.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.X.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -69,8 +59,7 @@ class LoadXAbsoluteY extends LoadXOperationBase {
     public void execute(CPU cpu) {
         super.execute(cpu);
 
-        byte[] bytes = cpu.readAfterPC(numBytes - 1);
-        if (Utilities.getOverflowFlag(bytes[1], cpu.Y.readAsByte(), false)) {
+        if (cpu.pageCrossed) {
             cpu.cycleCount++;
         }
     }
@@ -24,4 +24,14 @@ public abstract class Operation {
      * @param cpu
      */
     public abstract void execute(CPU cpu);
+
+    /**
+     * Whether this operation can send the PC anywhere but the next instruction (jumps, branches, returns, and BRK), so
+     * it has to be the last one in a basic block.
+     *
+     * @return
+     */
+    public boolean endsBasicBlock() {
+        return false;
+    }
 }
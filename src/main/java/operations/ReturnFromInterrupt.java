@@ -19,6 +19,11 @@ class ReturnFromInterruptImplicit extends Operation {
 
         cpu.cycleCount += cycles;
     }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
 
 public class ReturnFromInterrupt extends Instruction {
@@ -19,6 +19,11 @@ class ReturnFromSubroutineImplicit extends Operation {
 
         cpu.cycleCount += cycles;
     }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
 }
 
 public class ReturnFromSubroutine extends Instruction {
@@ -15,8 +15,8 @@ abstract class RotateLeftOperationBase extends Operation {
      **/
     @Override
     public void execute(CPU cpu) {
-        byte value = AddressingModeUtilities.getValue(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
-        int address = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int address = AddressingModeUtilities.getAddress(addressingMode, cpu);
+        byte value = cpu.memory.read(address);
 
         boolean newCarryFlag = Utilities.bitAt(value, 7);
         value = Utilities.bitShift(value, -1);
@@ -33,17 +33,7 @@ abstract class RotateLeftOperationBase extends Operation {
             cpu.P.clearCarryFlag();
         }
 
-        if (value == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (value < 0) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(value);
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -71,17 +61,7 @@ class RotateLeftImplicit extends RotateLeftOperationBase {
             cpu.P.clearCarryFlag();
         }
 
-        if (cpu.A.read() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
     }
@@ -15,7 +15,7 @@ abstract class StoreAccumulatorOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        int address = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int address = AddressingModeUtilities.getAddress(addressingMode, cpu);
         cpu.memory.write(address, cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
@@ -15,7 +15,7 @@ abstract class StoreYOperationBase extends Operation {
      */
     @Override
     public void execute(CPU cpu) {
-        int address = AddressingModeUtilities.getAddress(addressingMode, cpu, cpu.readAfterPC(numBytes - 1));
+        int address = AddressingModeUtilities.getAddress(addressingMode, cpu);
         cpu.memory.write(address, cpu.Y.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
@@ -17,17 +17,7 @@ class TransferAccumulatorXImplicit extends Operation {
     public void execute(CPU cpu) {
         cpu.X.writeByte(cpu.A.readAsByte());
 
-        if (cpu.X.readAsByte() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.X.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.X.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
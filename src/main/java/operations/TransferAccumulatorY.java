@@ -17,17 +17,7 @@ class TransferAccumulatorYImplicit extends Operation {
     public void execute(CPU cpu) {
         cpu.Y.writeByte(cpu.A.readAsByte());
 
-        if (cpu.Y.readAsByte() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.Y.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.Y.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -17,17 +17,7 @@ class TransferXAccumulatorImplicit extends Operation {
     public void execute(CPU cpu) {
         cpu.A.writeByte(cpu.X.readAsByte());
 
-        if (cpu.A.readAsByte() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.X.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -17,17 +17,7 @@ class TransferYAccumulatorImplicit extends Operation {
     public void execute(CPU cpu) {
         cpu.A.writeByte(cpu.Y.readAsByte());
 
-        if (cpu.A.readAsByte() == 0) {
-            cpu.P.setZeroFlag();
-        } else {
-            cpu.P.clearZeroFlag();
-        }
-
-        if (cpu.A.signBit()) {
-            cpu.P.setNegativeFlag();
-        } else {
-            cpu.P.clearNegativeFlag();
-        }
+        cpu.P.setZeroAndNegativeFlags(cpu.A.readAsByte());
 
         cpu.PC.incrementBy(numBytes);
         cpu.cycleCount += cycles;
@@ -0,0 +1,35 @@
+package operations;
+
+import nes.CPU;
+
+/**
+ * Fills every slot of the CPU's dispatch table that no Instruction claims. Unofficial opcodes are treated as a one
+ * byte, two cycle NOP so that execution keeps moving, and we only report the opcode the first time we run into it.
+ */
+public class UnimplementedOperation extends Operation {
+    private boolean reported;
+
+    public UnimplementedOperation(byte opcode) {
+        super(AddressingMode.Implicit, opcode, 1, 2);
+        this.reported = false;
+    }
+
+    /**
+     * Report the opcode (once) and skip over it like a NOP.
+     */
+    @Override
+    public void execute(CPU cpu) {
+        if (!reported) {
+            System.err.println("Unimplemented instruction: " + Utilities.byteToString(opcode));
+            reported = true;
+        }
+
+        cpu.PC.incrementBy(numBytes);
+        cpu.cycleCount += cycles;
+    }
+
+    @Override
+    public boolean endsBasicBlock() {
+        return true;
+    }
+}
@@ -97,6 +97,22 @@ public abstract class Utilities {
         return (bitShift(b, n) & (byte) 0x01) == (byte) 0x01;
     }
 
+    /**
+     * Pack up to eight booleans into a byte, with the first one in bit 0. Read them back with bitAt().
+     *
+     * @param bits
+     * @return
+     */
+    public static byte toByte(boolean... bits) {
+        int b = 0;
+        for (int n = 0; n < bits.length; n++) {
+            if (bits[n]) {
+                b |= 1 << n;
+            }
+        }
+        return (byte) b;
+    }
+
     /**
      * Return a nice hexadecimal representation of one byte
      *
@@ -17,7 +17,6 @@ final public class MainScreen {
 
     private final WhiteRavenPanel panel;
     private final JFrame frame;
-    private int[] imageData;
 
     public MainScreen() {
         panel = new MainScreen.WhiteRavenPanel();
@@ -28,17 +27,17 @@ final public class MainScreen {
         frame.setResizable(true);
         frame.setSize(SCREEN_WIDTH, SCREEN_HEIGHT);
         frame.setVisible(true);
-        imageData = new int[SCREEN_WIDTH * SCREEN_HEIGHT];
     }
 
     /**
-     * Set the new image
+     * Copy the new image into the screen. The caller keeps ownership of the array, so it can be reused as soon as
+     * this returns.
      *
      * @param image
      */
     public synchronized void push(final int[] image) {
         if (image != null) {
-            imageData = image;
+            this.panel.processNewImage(image);
         }
     }
 
@@ -46,7 +45,6 @@ final public class MainScreen {
      * Paint the image
      */
     public synchronized void redraw() {
-        this.panel.processNewImage(imageData);
         this.panel.repaint();
     }
 
@@ -1,45 +1,110 @@
 package screen;
 
 import io.KeyboardController;
+import io.NoopController;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import nes.Console;
-import nes.Interrupt;
+import nes.MovieRecorder;
+import nes.RewindBuffer;
 
 /**
- * Starts the Emulator with a path to a game to load in.
+ * Starts the Emulator with a path to a game to load in. Hold backspace to rewind the game one frame at a time.
+ *
+ * With --record, the game is recorded from power-on into a movie file that's written when the emulator exits, and
+ * can be played back with HeadlessRunner.
  */
 public class WhiteRavenLauncher {
-    public static final double CPU_CYCLES_PER_SECOND = 1789773.0; // ~1.79 MHz
+    private static final long REWIND_BUDGET_BYTES = 16 * 1024 * 1024;
+    private static final int REWIND_KEY = KeyEvent.VK_BACK_SPACE;
 
+    /**
+     * Usage: WhiteRavenLauncher path/to/game.nes [--record path/to/movie.wrm]
+     */
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println("Provide a file path to a game!");
             System.exit(1);
         }
         final String pathToGame = args[0];
+        final Path moviePath = args.length > 2 && args[1].equals("--record") ? Paths.get(args[2]) : null;
+
+        // Registered before the keyboard controller, which swallows every key event it sees
+        final AtomicBoolean rewinding = new AtomicBoolean(false);
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(keyEvent -> {
+            if (keyEvent.getKeyCode() == REWIND_KEY) {
+                rewinding.set(keyEvent.getID() != KeyEvent.KEY_RELEASED);
+            }
+            return false;
+        });
+
+        final KeyboardController keyboardController = new KeyboardController();
         final Console console = new Console.Builder()
             .setCartridgePath(pathToGame)
-            .setJoypadOne(new KeyboardController())
+            .setJoypadOne(keyboardController)
             .build();
+        final MovieRecorder recorder = moviePath != null
+            ? MovieRecorder.fromPowerOn(console, keyboardController, new NoopController())
+            : null;
+        if (recorder != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> saveMovie(recorder, moviePath)));
+        }
+        final RewindBuffer rewindBuffer = new RewindBuffer(console, REWIND_BUDGET_BYTES);
         final MainScreen screen = new MainScreen();
         final Timer timer = new Timer();
         int FRAME_TIME = 17;
         timer.scheduleAtFixedRate(new TimerTask() {
+            private boolean rewound;
+
             @Override
             public void run() {
-                for (int i = 0; i < CPU_CYCLES_PER_SECOND / 60; i++) {
-                    console.ppu.executeCycles(3);
-                    console.cpu.executeCycle();
-                    if (console.ppu.triggerVerticalBlank) {
-                        console.cpu.triggerInterrupt(Interrupt.NMI);
-                        console.ppu.triggerVerticalBlank = false;
-                        int[] image = console.ppu.getImage();
-                        screen.push(image);
-                        screen.redraw();
+                if (rewinding.get()) {
+                    // Load the frame before and run it again so it's drawn. Nothing's captured while rewinding, so
+                    // the next rewind goes back one more frame.
+                    if (rewindBuffer.rewind()) {
+                        if (recorder != null) {
+                            recorder.update();
+                        }
+                        console.runFrame();
+                        draw(console, screen);
+                        rewound = true;
                     }
+                    return;
+                }
+                if (rewound) {
+                    // Pick up the history again from the frame we just ran
+                    rewindBuffer.capture();
+                    rewound = false;
                 }
+                if (recorder != null) {
+                    recorder.update();
+                }
+                console.runFrame();
+                draw(console, screen);
+                rewindBuffer.capture();
             }
         }, 0, FRAME_TIME);
     }
+
+    private static void saveMovie(final MovieRecorder recorder, final Path moviePath) {
+        try {
+            recorder.getMovie().write(moviePath);
+            System.out.println("Saved movie to " + moviePath);
+        } catch (IOException e) {
+            System.err.println("Couldn't save the movie to " + moviePath + ": " + e.getMessage());
+        }
+    }
+
+    private static void draw(final Console console, final MainScreen screen) {
+        final int[] image = console.ppu.acquireImage();
+        screen.push(image);
+        console.ppu.releaseImage(image);
+        screen.redraw();
+    }
 }
@@ -0,0 +1,232 @@
+package web;
+
+import io.InputMaskJoypad;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import nes.Console;
+import web.transport.InputMessage;
+
+/**
+ * Deterministic lockstep netplay between two peers. Each peer runs its own Console and the only thing sent over the
+ * connection is each player's buttons for every frame, so nothing is rendered or streamed by a server.
+ *
+ * The buttons sampled at the start of frame n are used on frame n + INPUT_DELAY, which gives them that many frames to
+ * get to the other peer. A frame only runs once both players' buttons for it are known, and both peers feed them to
+ * the consoles at the same point (the start of VBLANK), so the consoles stay identical. Every CHECKSUM_INTERVAL frames
+ * the peers also swap checksums of their console state, and the session stops if they differ.
+ */
+public class LockstepSession implements Runnable {
+    private static final int INPUT_DELAY = 2;
+    private static final int INPUT_DELAY_SLOTS = INPUT_DELAY + 1;
+    private static final int CHECKSUM_INTERVAL = 60;
+    private static final long FRAME_NANOS = 1_000_000_000L / WhiteRavenServer.FRAMES_PER_SECOND;
+    private static final long RECEIVE_TIMEOUT_SECONDS = 10;
+
+    private final Console console;
+    private final Socket socket;
+    private final DataOutputStream outputStream;
+    private final InputMaskJoypad localJoypad;
+    private final InputMaskJoypad remoteJoypad;
+    private final Supplier<Byte> localInput;
+    private final byte[] delayedLocalInput; // Local buttons already sent for the coming frames, indexed by frame
+    private final Consumer<Console> frameListener;
+    private final BlockingQueue<InputMessage> remoteMessages;
+    private final Map<Integer, Long> localChecksums;
+    private final Map<Integer, Long> remoteChecksums;
+    private volatile boolean connected;
+    private int frame;
+
+    /**
+     * @param console       The console to run, freshly built with the same ROM on both peers
+     * @param socket        The connection to the other peer
+     * @param firstPlayer   Whether the local player is the first player. Exactly one of the peers has to be.
+     * @param localInput    Returns the buttons the local player is holding, as a mask
+     * @param frameListener Called after every frame, e.g. to draw it
+     */
+    public LockstepSession(
+            final Console console,
+            final Socket socket,
+            final boolean firstPlayer,
+            final Supplier<Byte> localInput,
+            final Consumer<Console> frameListener) throws IOException {
+        this.console = console;
+        this.socket = socket;
+        this.outputStream = new DataOutputStream(socket.getOutputStream());
+        this.localJoypad = new InputMaskJoypad();
+        this.remoteJoypad = new InputMaskJoypad();
+        this.localInput = localInput;
+        this.delayedLocalInput = new byte[INPUT_DELAY_SLOTS];
+        this.frameListener = frameListener;
+        this.remoteMessages = new LinkedBlockingQueue<>();
+        this.localChecksums = new HashMap<>();
+        this.remoteChecksums = new HashMap<>();
+        this.connected = true;
+        this.frame = 0;
+
+        socket.setTcpNoDelay(true);
+        console.setJoypadOne(firstPlayer ? localJoypad : remoteJoypad);
+        console.setJoypadTwo(firstPlayer ? remoteJoypad : localJoypad);
+    }
+
+    /**
+     * Run frames in lockstep with the other peer until the connection drops or the consoles desync.
+     */
+    @Override
+    public void run() {
+        final Thread receiver = new Thread(this::receiveMessages, "lockstep-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        long deadline = System.nanoTime();
+        try {
+            while (connected) {
+                sendLocalInput();
+
+                // The first INPUT_DELAY frames run with no buttons pressed on either side
+                byte remoteButtons = 0x0;
+                if (frame >= INPUT_DELAY) {
+                    final InputMessage remoteMessage = takeRemoteMessage();
+                    if (remoteMessage == null) {
+                        break;
+                    }
+                    remoteButtons = remoteMessage.buttons;
+                }
+                localJoypad.setButtons(delayedLocalInput[frame % INPUT_DELAY_SLOTS]);
+                remoteJoypad.setButtons(remoteButtons);
+
+                console.runFrame();
+                frameListener.accept(console);
+                frame++;
+
+                deadline += FRAME_NANOS;
+                final long sleepNanos = deadline - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } else {
+                    // Don't try to catch up on frames we've fallen behind on
+                    deadline = System.nanoTime();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Lost connection to peer: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+        } finally {
+            connected = false;
+            close();
+        }
+    }
+
+    /**
+     * Sample the local buttons for frame + INPUT_DELAY and send them, along with a checksum every CHECKSUM_INTERVAL
+     * frames.
+     */
+    private void sendLocalInput() throws IOException {
+        final byte buttons = localInput.get();
+        final int inputFrame = frame + INPUT_DELAY;
+        delayedLocalInput[inputFrame % INPUT_DELAY_SLOTS] = buttons;
+
+        int checksumFrame = InputMessage.NO_CHECKSUM;
+        long checksum = 0;
+        if (frame % CHECKSUM_INTERVAL == 0) {
+            checksumFrame = frame;
+            checksum = console.stateChecksum();
+            localChecksums.put(frame, checksum);
+            compareChecksums(frame);
+        }
+
+        outputStream.write(new InputMessage(inputFrame, buttons, checksumFrame, checksum).serialize());
+        outputStream.flush();
+    }
+
+    /**
+     * Wait for the other player's buttons for the current frame.
+     *
+     * @return The message, or null if the peer disconnected
+     */
+    private InputMessage takeRemoteMessage() throws InterruptedException {
+        while (connected) {
+            final InputMessage message = remoteMessages.poll(RECEIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (message == null) {
+                System.out.println("Still waiting for the other player's input for frame " + frame);
+                continue;
+            }
+            if (message.frame != frame) {
+                throw new IllegalStateException(
+                    String.format("Expected input for frame %d but got frame %d", frame, message.frame));
+            }
+            if (message.hasChecksum()) {
+                remoteChecksums.put(message.checksumFrame, message.checksum);
+                compareChecksums(message.checksumFrame);
+            }
+            return message;
+        }
+        return null;
+    }
+
+    /**
+     * Compare the checksums of a frame once both peers' are in.
+     */
+    private void compareChecksums(final int checksumFrame) {
+        final Long local = localChecksums.get(checksumFrame);
+        final Long remote = remoteChecksums.get(checksumFrame);
+        if (local == null || remote == null) {
+            return;
+        }
+        localChecksums.remove(checksumFrame);
+        remoteChecksums.remove(checksumFrame);
+        if (!local.equals(remote)) {
+            throw new IllegalStateException(String.format(
+                "Desync detected at frame %d: local checksum %x, remote checksum %x", checksumFrame, local, remote));
+        }
+    }
+
+    /**
+     * Read messages from the peer on a separate thread so a slow peer only ever blocks the frame that needs its input.
+     */
+    private void receiveMessages() {
+        try {
+            final DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+            while (connected) {
+                remoteMessages.put(InputMessage.deserialize(inputStream));
+            }
+        } catch (EOFException e) {
+            System.out.println("The other player has disconnected");
+        } catch (IOException e) {
+            if (connected) {
+                System.out.println("Lost connection to peer: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connected = false;
+        }
+    }
+
+    /**
+     * The number of frames run so far.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    private void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Error closing connection to peer: " + e.getMessage());
+        }
+    }
+}
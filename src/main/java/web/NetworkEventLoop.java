@@ -0,0 +1,182 @@
+package web;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.function.BiFunction;
+import web.transport.JoinMessage;
+
+/**
+ * Runs all of the server's networking on one thread with a Selector: accepting connections, reading the JoinMessage
+ * each client starts with, reading button messages, and writing queued images to players. Channels are only
+ * registered for writes while their player has images waiting, so a client that stops reading just stops being
+ * written to, and a closed or broken connection is noticed on the next read or write and the player is closed.
+ *
+ * Other threads queue images on players and then call wakeup() so the loop picks them up.
+ */
+public class NetworkEventLoop implements Runnable {
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final BiFunction<SocketChannel, JoinMessage, WhiteRavenPlayer> connectionHandler;
+
+    /**
+     * @param serverChannel     The channel to accept connections on
+     * @param connectionHandler Makes a player for each new connection once its JoinMessage has arrived, or returns
+     *                          null to turn the client away. Called on the event loop thread.
+     */
+    public NetworkEventLoop(
+            final ServerSocketChannel serverChannel,
+            final BiFunction<SocketChannel, JoinMessage, WhiteRavenPlayer> connectionHandler) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = serverChannel;
+        this.connectionHandler = connectionHandler;
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Wake the loop up so it writes out newly queued images.
+     */
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (serverChannel.isOpen()) {
+                updateInterestOps();
+                selector.select();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.attachment() instanceof PendingConnection) {
+                        handlePendingConnection(key, (PendingConnection) key.attachment());
+                    } else {
+                        handlePlayer(key, (WhiteRavenPlayer) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Network event loop stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Only ask for writes on the channels of players that have something to write.
+     */
+    private void updateInterestOps() {
+        for (final SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof WhiteRavenPlayer)) {
+                continue;
+            }
+
+            final WhiteRavenPlayer player = (WhiteRavenPlayer) key.attachment();
+            final int interestOps = player.hasPendingOutput()
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ;
+            if (key.interestOps() != interestOps) {
+                key.interestOps(interestOps);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        try {
+            channel.register(selector, SelectionKey.OP_READ, new PendingConnection());
+        } catch (ClosedChannelException e) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read from a client that hasn't joined a room yet, and hand it over to the connection handler once its whole
+     * JoinMessage is in. Any button messages that came in right behind it go to the new player.
+     */
+    private void handlePendingConnection(final SelectionKey key, final PendingConnection connection) {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (channel.read(connection.buffer) < 0) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+
+            connection.buffer.flip();
+            final JoinMessage joinMessage = JoinMessage.deserialize(connection.buffer);
+            if (joinMessage == null) {
+                if (connection.buffer.limit() == connection.buffer.capacity()) {
+                    throw new IllegalArgumentException("Join message too long");
+                }
+                connection.buffer.compact();
+                return;
+            }
+
+            final WhiteRavenPlayer player = connectionHandler.apply(channel, joinMessage);
+            if (player == null) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+            key.attach(player);
+            player.handleInput(connection.buffer);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Dropping client that didn't join a room: " + e.getMessage());
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                System.out.println("Error closing connection: " + closeException.getMessage());
+            }
+        }
+    }
+
+    private void handlePlayer(final SelectionKey key, final WhiteRavenPlayer player) {
+        try {
+            if (key.isReadable() && !player.readInput()) {
+                disconnect(key, player);
+                return;
+            }
+            if (key.isWritable()) {
+                player.writeOutput();
+            }
+        } catch (IOException e) {
+            disconnect(key, player);
+        }
+    }
+
+    private void disconnect(final SelectionKey key, final WhiteRavenPlayer player) {
+        key.cancel();
+        player.close();
+    }
+
+    /**
+     * A client that's connected but hasn't sent its whole JoinMessage yet.
+     */
+    private static class PendingConnection {
+        private static final int MAX_JOIN_MESSAGE_SIZE = 1024;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_JOIN_MESSAGE_SIZE);
+    }
+}
@@ -0,0 +1,346 @@
+package web;
+
+import io.InputMaskJoypad;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import nes.Console;
+import web.transport.InputMessage;
+
+/**
+ * Rollback netplay between two peers. Like LockstepSession each peer runs its own Console and only the buttons
+ * pressed each frame are exchanged, but frames never wait on the network: when the other player's buttons for a frame
+ * haven't arrived yet we guess they're still holding what they held last. When the real buttons arrive and the guess
+ * was wrong, we load the snapshot from the start of the first frame we got wrong and run the frames since then again
+ * with the right buttons, without drawing them, all before the next frame is shown. This keeps play responsive with a
+ * lot of latency between the players, as long as they don't get more than MAX_ROLLBACK_FRAMES apart.
+ *
+ * A snapshot of the console is saved at the start of every frame. Once both players' buttons before a frame are known
+ * its snapshot can't change anymore, and every CHECKSUM_INTERVAL frames the peers swap checksums of those snapshots to
+ * make sure they haven't desynced.
+ */
+public class RollbackSession implements Runnable {
+    private static final int INPUT_DELAY = 1;
+    private static final int MAX_ROLLBACK_FRAMES = 8;
+    private static final int NUM_SNAPSHOTS = MAX_ROLLBACK_FRAMES + 1;
+    // Buttons are kept for frames as far back as we can roll back, and the other player's can arrive for frames up to
+    // MAX_ROLLBACK_FRAMES + 2 * INPUT_DELAY ahead of ours
+    private static final int INPUT_HISTORY_SIZE = 2 * (MAX_ROLLBACK_FRAMES + INPUT_DELAY) + 2;
+    private static final int CHECKSUM_INTERVAL = 60;
+    private static final long FRAME_NANOS = 1_000_000_000L / WhiteRavenServer.FRAMES_PER_SECOND;
+    private static final long RECEIVE_TIMEOUT_SECONDS = 10;
+
+    private final Console console;
+    private final Socket socket;
+    private final DataOutputStream outputStream;
+    private final InputMaskJoypad joypadOne;
+    private final InputMaskJoypad joypadTwo;
+    private final InputMaskJoypad localJoypad;
+    private final InputMaskJoypad remoteJoypad;
+    private final Supplier<Byte> localInput;
+    private final Consumer<Console> frameListener;
+    private final BlockingQueue<InputMessage> remoteMessages;
+    private final ByteBuffer[] snapshots; // The state at the start of each frame, indexed by frame
+    private final byte[] localInputs; // All indexed by frame
+    private final byte[] remoteInputs;
+    private final byte[] usedRemoteInputs; // What we ran each frame with, which may have been a guess
+    private final Map<Integer, Long> localChecksums;
+    private final Map<Integer, Long> remoteChecksums;
+    private volatile boolean connected;
+    private int frame; // The next frame to run
+    private int remoteInputCount; // The other player's buttons are known for every frame before this one
+    private int nextChecksumFrame;
+    private int pendingChecksumFrame; // A checksum waiting to be sent with the next buttons
+    private long pendingChecksum;
+    private long rolledBackFrames;
+
+    /**
+     * @param console       The console to run, freshly built with the same ROM on both peers
+     * @param socket        The connection to the other peer
+     * @param firstPlayer   Whether the local player is the first player. Exactly one of the peers has to be.
+     * @param localInput    Returns the buttons the local player is holding, as a mask
+     * @param frameListener Called after every frame that's shown, e.g. to draw it. Frames that are run again after a
+     *                      rollback aren't shown.
+     */
+    public RollbackSession(
+            final Console console,
+            final Socket socket,
+            final boolean firstPlayer,
+            final Supplier<Byte> localInput,
+            final Consumer<Console> frameListener) throws IOException {
+        this.console = console;
+        this.socket = socket;
+        this.outputStream = new DataOutputStream(socket.getOutputStream());
+        this.joypadOne = new InputMaskJoypad();
+        this.joypadTwo = new InputMaskJoypad();
+        this.localJoypad = firstPlayer ? joypadOne : joypadTwo;
+        this.remoteJoypad = firstPlayer ? joypadTwo : joypadOne;
+        this.localInput = localInput;
+        this.frameListener = frameListener;
+        this.remoteMessages = new LinkedBlockingQueue<>();
+        this.snapshots = new ByteBuffer[NUM_SNAPSHOTS];
+        for (int i = 0; i < NUM_SNAPSHOTS; i++) {
+            this.snapshots[i] = ByteBuffer.allocate(console.stateSize() + 2 * InputMaskJoypad.STATE_SIZE);
+        }
+        this.localInputs = new byte[INPUT_HISTORY_SIZE];
+        this.remoteInputs = new byte[INPUT_HISTORY_SIZE];
+        this.usedRemoteInputs = new byte[INPUT_HISTORY_SIZE];
+        this.localChecksums = new HashMap<>();
+        this.remoteChecksums = new HashMap<>();
+        this.connected = true;
+        this.frame = 0;
+        // Nobody presses anything during the first INPUT_DELAY frames
+        this.remoteInputCount = INPUT_DELAY;
+        this.nextChecksumFrame = 0;
+        this.pendingChecksumFrame = InputMessage.NO_CHECKSUM;
+        this.rolledBackFrames = 0;
+
+        socket.setTcpNoDelay(true);
+        console.setJoypadOne(joypadOne);
+        console.setJoypadTwo(joypadTwo);
+    }
+
+    /**
+     * Run frames until the connection drops or the consoles desync.
+     */
+    @Override
+    public void run() {
+        final Thread receiver = new Thread(this::receiveMessages, "rollback-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        long deadline = System.nanoTime();
+        try {
+            while (connected) {
+                InputMessage message;
+                if (frame - remoteInputCount >= MAX_ROLLBACK_FRAMES) {
+                    // We're too far ahead of the other player to roll back if we guess wrong, so wait for them
+                    message = remoteMessages.poll(RECEIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    if (message == null) {
+                        System.out.println("Still waiting for the other player's input for frame " + remoteInputCount);
+                    }
+                    deadline = System.nanoTime();
+                } else {
+                    message = remoteMessages.poll();
+                }
+                if (message != null) {
+                    handleRemoteMessages(message);
+                    continue;
+                }
+                if (frame - remoteInputCount >= MAX_ROLLBACK_FRAMES) {
+                    continue;
+                }
+
+                sendLocalInput();
+                runFrame(frame);
+                frame++;
+                updateChecksums();
+                frameListener.accept(console);
+
+                deadline += FRAME_NANOS;
+                final long sleepNanos = deadline - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } else {
+                    // Don't try to catch up on frames we've fallen behind on
+                    deadline = System.nanoTime();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Lost connection to peer: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+        } finally {
+            connected = false;
+            close();
+            System.out.println(String.format("Ran %d frames, %d of them again after rolling back", frame, rolledBackFrames));
+        }
+    }
+
+    /**
+     * Record the other player's buttons from a message and every other one that has arrived, then roll back to the
+     * first frame we guessed wrong on, if any.
+     *
+     * @param firstMessage
+     */
+    private void handleRemoteMessages(final InputMessage firstMessage) {
+        int rollbackFrame = frame;
+        for (InputMessage message = firstMessage; message != null; message = remoteMessages.poll()) {
+            if (message.frame != remoteInputCount) {
+                throw new IllegalStateException(String.format(
+                    "Expected input for frame %d but got frame %d", remoteInputCount, message.frame));
+            }
+            remoteInputs[message.frame % INPUT_HISTORY_SIZE] = message.buttons;
+            remoteInputCount++;
+            if (message.frame < frame && usedRemoteInputs[message.frame % INPUT_HISTORY_SIZE] != message.buttons) {
+                rollbackFrame = Math.min(rollbackFrame, message.frame);
+            }
+
+            if (message.hasChecksum()) {
+                remoteChecksums.put(message.checksumFrame, message.checksum);
+                compareChecksums(message.checksumFrame);
+            }
+        }
+
+        if (rollbackFrame < frame) {
+            rollBack(rollbackFrame);
+        }
+        updateChecksums();
+    }
+
+    /**
+     * Load the snapshot from the start of a frame and run every frame since then again with the buttons we know now.
+     *
+     * @param fromFrame
+     */
+    private void rollBack(final int fromFrame) {
+        loadSnapshot(fromFrame);
+        for (int rerunFrame = fromFrame; rerunFrame < frame; rerunFrame++) {
+            runFrame(rerunFrame);
+        }
+        rolledBackFrames += frame - fromFrame;
+    }
+
+    /**
+     * Save a snapshot and run one frame with both players' buttons, guessing the other player's if we have to.
+     *
+     * @param runFrame
+     */
+    private void runFrame(final int runFrame) {
+        saveSnapshot(runFrame);
+
+        final int index = runFrame % INPUT_HISTORY_SIZE;
+        if (runFrame < remoteInputCount) {
+            usedRemoteInputs[index] = remoteInputs[index];
+        } else {
+            usedRemoteInputs[index] = remoteInputs[(remoteInputCount - 1) % INPUT_HISTORY_SIZE];
+        }
+        localJoypad.setButtons(localInputs[index]);
+        remoteJoypad.setButtons(usedRemoteInputs[index]);
+        console.runFrame();
+    }
+
+    private void saveSnapshot(final int snapshotFrame) {
+        final ByteBuffer snapshot = snapshots[snapshotFrame % NUM_SNAPSHOTS];
+        snapshot.clear();
+        console.saveState(snapshot);
+        joypadOne.saveState(snapshot);
+        joypadTwo.saveState(snapshot);
+        snapshot.flip();
+    }
+
+    private void loadSnapshot(final int snapshotFrame) {
+        final ByteBuffer snapshot = snapshots[snapshotFrame % NUM_SNAPSHOTS];
+        snapshot.rewind();
+        console.loadState(snapshot);
+        joypadOne.loadState(snapshot);
+        joypadTwo.loadState(snapshot);
+    }
+
+    /**
+     * Sample the local buttons for frame + INPUT_DELAY and send them, along with a checksum if one is ready.
+     */
+    private void sendLocalInput() throws IOException {
+        final byte buttons = localInput.get();
+        final int inputFrame = frame + INPUT_DELAY;
+        localInputs[inputFrame % INPUT_HISTORY_SIZE] = buttons;
+
+        outputStream.write(new InputMessage(inputFrame, buttons, pendingChecksumFrame, pendingChecksum).serialize());
+        outputStream.flush();
+        pendingChecksumFrame = InputMessage.NO_CHECKSUM;
+    }
+
+    /**
+     * Take a checksum of the next CHECKSUM_INTERVAL frame once its snapshot is final: we've run the frame and know both
+     * players' buttons for every frame before it.
+     */
+    private void updateChecksums() {
+        if (nextChecksumFrame >= frame || nextChecksumFrame > remoteInputCount) {
+            return;
+        }
+
+        final ByteBuffer snapshot = snapshots[nextChecksumFrame % NUM_SNAPSHOTS];
+        final CRC32 checksum = new CRC32();
+        checksum.update(snapshot.array(), 0, snapshot.limit());
+        localChecksums.put(nextChecksumFrame, checksum.getValue());
+        compareChecksums(nextChecksumFrame);
+
+        pendingChecksumFrame = nextChecksumFrame;
+        pendingChecksum = checksum.getValue();
+        nextChecksumFrame += CHECKSUM_INTERVAL;
+    }
+
+    /**
+     * Compare the checksums of a frame once both peers' are in.
+     */
+    private void compareChecksums(final int checksumFrame) {
+        final Long local = localChecksums.get(checksumFrame);
+        final Long remote = remoteChecksums.get(checksumFrame);
+        if (local == null || remote == null) {
+            return;
+        }
+        localChecksums.remove(checksumFrame);
+        remoteChecksums.remove(checksumFrame);
+        if (!local.equals(remote)) {
+            throw new IllegalStateException(String.format(
+                "Desync detected at frame %d: local checksum %x, remote checksum %x", checksumFrame, local, remote));
+        }
+    }
+
+    /**
+     * Read messages from the peer on a separate thread so the frame loop never blocks on the network.
+     */
+    private void receiveMessages() {
+        try {
+            final DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+            while (connected) {
+                remoteMessages.put(InputMessage.deserialize(inputStream));
+            }
+        } catch (EOFException e) {
+            System.out.println("The other player has disconnected");
+        } catch (IOException e) {
+            if (connected) {
+                System.out.println("Lost connection to peer: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connected = false;
+        }
+    }
+
+    /**
+     * The number of frames run so far, not counting frames run again after a rollback.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * The number of frames run again after rolling back.
+     */
+    public long getRolledBackFrames() {
+        return rolledBackFrames;
+    }
+
+    private void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Error closing connection to peer: " + e.getMessage());
+        }
+    }
+}
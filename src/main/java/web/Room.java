@@ -0,0 +1,179 @@
+package web;
+
+import io.NetworkJoypad;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import nes.Console;
+import web.transport.FrameEncoder;
+import web.transport.ImageMessage;
+
+/**
+ * A game hosted by the server: one Console running one ROM, and the players and viewers connected to it. The
+ * RoomManager runs a room's frames on its worker pool, but only one frame of a room at a time.
+ */
+public class Room {
+    private final String id;
+    private final String romName;
+    private final Console console;
+    private final FrameEncoder frameEncoder;
+    private final Map<ClientType, List<WhiteRavenPlayer>> players;
+    private final AtomicBoolean running; // Whether a frame of this room is queued or running on the worker pool
+    // Joypads of players who joined since the last frame. They're attached to the console by the thread running the
+    // next frame, since the console isn't safe to touch from the network thread.
+    private final AtomicReference<NetworkJoypad> newJoypadOne;
+    private final AtomicReference<NetworkJoypad> newJoypadTwo;
+    private volatile long lastActiveTime; // When the room last had players, in ms
+
+    public Room(final String id, final String romName, final Console console) {
+        this.id = id;
+        this.romName = romName;
+        this.console = console;
+        // Players that need a keyframe get one of their own, so nobody needs periodic keyframes
+        this.frameEncoder = new FrameEncoder(FrameEncoder.NO_PERIODIC_KEYFRAMES);
+        // The lists are copy on write since players join from the network thread while frames are sent to them
+        this.players = new HashMap<>();
+        for (ClientType clientType : ClientType.values()) {
+            this.players.put(clientType, new CopyOnWriteArrayList<>());
+        }
+        this.running = new AtomicBoolean(false);
+        this.newJoypadOne = new AtomicReference<>();
+        this.newJoypadTwo = new AtomicReference<>();
+        this.lastActiveTime = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRomName() {
+        return romName;
+    }
+
+    /**
+     * Add a new connection by assigning this player a role and adding it to the map of current players.
+     *
+     * @param clientChannel
+     * @return The new player
+     */
+    public synchronized WhiteRavenPlayer addPlayer(final SocketChannel clientChannel) {
+        final ClientType clientType;
+        NetworkJoypad joypad = null;
+
+        if (players.get(ClientType.FIRST_PLAYER).size() == 0) {
+            clientType = ClientType.FIRST_PLAYER;
+            joypad = new NetworkJoypad();
+            newJoypadOne.set(joypad);
+        } else if (players.get(ClientType.SECOND_PLAYER).size() == 0) {
+            clientType = ClientType.SECOND_PLAYER;
+            joypad = new NetworkJoypad();
+            newJoypadTwo.set(joypad);
+        } else {
+            clientType = ClientType.VIEWER;
+        }
+
+        final WhiteRavenPlayer player = new WhiteRavenPlayer.Builder()
+            .setClientType(clientType)
+            .setChannel(clientChannel)
+            .setJoypad(joypad)
+            .build();
+
+        players.get(clientType).add(player);
+        lastActiveTime = System.currentTimeMillis();
+        System.out.println(String.format("Client %s has joined room %s", player.toString(), id));
+
+        return player;
+    }
+
+    /**
+     * Whether anybody is connected to the room. Rooms without players are paused.
+     */
+    public boolean hasPlayers() {
+        for (final List<WhiteRavenPlayer> playerList : players.values()) {
+            if (!playerList.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * How long the room has gone without players, in ms.
+     */
+    public long idleTime(final long now) {
+        if (hasPlayers()) {
+            lastActiveTime = now;
+        }
+        return now - lastActiveTime;
+    }
+
+    /**
+     * Claim the room for running a frame. Returns false if a frame is still queued or running, in which case the room
+     * just skips this tick rather than piling frames up.
+     */
+    boolean tryStartFrame() {
+        return running.compareAndSet(false, true);
+    }
+
+    /**
+     * Run the console for a frame, and send the finished frame to the players. The message is encoded once and the
+     * same bytes are queued for every player, except for players who just joined or fell behind: they get the same
+     * frame as a keyframe (also encoded at most once), so they're in sync from that frame on. The joypads of players
+     * who joined since the last frame are plugged in first.
+     *
+     * @param networkEventLoop Woken up once the frame is queued on the players
+     */
+    void runFrame(final NetworkEventLoop networkEventLoop) {
+        try {
+            attachNewJoypads();
+            console.runFrame();
+            final int[] image = console.ppu.acquireImage();
+            final ImageMessage imageMessage = frameEncoder.encode(image);
+            console.ppu.releaseImage(image);
+            ImageMessage syncKeyframe = null;
+            for (final List<WhiteRavenPlayer> playerList : players.values()) {
+                for (final WhiteRavenPlayer player : playerList) {
+                    if (!player.alive()) {
+                        playerList.remove(player);
+                        // The room is idle from when its last player leaves, not from when they joined
+                        lastActiveTime = System.currentTimeMillis();
+                        System.out.println(String.format("Player has left room %s: %s", id, player.toString()));
+                    } else if (player.needsKeyframe() && !imageMessage.isKeyframe()) {
+                        if (syncKeyframe == null) {
+                            syncKeyframe = frameEncoder.encodeSyncKeyframe();
+                        }
+                        player.sendImage(syncKeyframe);
+                    } else {
+                        player.sendImage(imageMessage);
+                    }
+                }
+            }
+            networkEventLoop.wakeup();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Plug the joypads of players who joined since the last frame into the console.
+     */
+    private void attachNewJoypads() {
+        final NetworkJoypad joypadOne = newJoypadOne.getAndSet(null);
+        if (joypadOne != null) {
+            console.setJoypadOne(joypadOne);
+        }
+        final NetworkJoypad joypadTwo = newJoypadTwo.getAndSet(null);
+        if (joypadTwo != null) {
+            console.setJoypadTwo(joypadTwo);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s)", id, romName);
+    }
+}
@@ -0,0 +1,131 @@
+package web;
+
+import java.io.File;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import nes.Console;
+import web.transport.JoinMessage;
+
+/**
+ * Hosts any number of rooms in one server. Every FRAME_TIME ms each room with players gets one frame run on a worker
+ * pool with a thread per core. Rooms without players are paused, and evicted once they've been empty for
+ * IDLE_EVICTION_TIME ms.
+ *
+ * ROMs come from the path the server was started with. If it's a directory, clients name a ROM file in it when they
+ * create a room. If it's a single ROM, every room runs that ROM.
+ */
+public class RoomManager {
+    private static final long IDLE_EVICTION_TIME = 60_000;
+
+    private final Path romPath;
+    private final Map<String, Room> rooms;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private NetworkEventLoop networkEventLoop;
+
+    public RoomManager(final Path romPath) {
+        this.romPath = romPath.toAbsolutePath().normalize();
+        this.rooms = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Start running rooms.
+     *
+     * @param networkEventLoop The loop the rooms' players are connected through
+     */
+    public void start(final NetworkEventLoop networkEventLoop) {
+        this.networkEventLoop = networkEventLoop;
+        scheduler.scheduleAtFixedRate(this::tick, 0, WhiteRavenServer.FRAME_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a client to the room it asked for, creating the room if it doesn't exist yet.
+     *
+     * @param clientChannel
+     * @param joinMessage
+     * @return The new player, or null if the client can't join
+     */
+    public synchronized WhiteRavenPlayer join(final SocketChannel clientChannel, final JoinMessage joinMessage) {
+        final Path rom = resolveRom(joinMessage.romName);
+        if (rom == null) {
+            System.err.println("Unknown ROM requested for " + joinMessage.toString());
+            return null;
+        }
+        final String romName = rom.getFileName().toString();
+
+        final Room room = rooms.computeIfAbsent(joinMessage.roomId, id -> createRoom(id, rom));
+        if (room == null) {
+            return null;
+        }
+        if (!room.getRomName().equals(romName)) {
+            System.err.println(String.format("Room %s is already running %s", room.getId(), room.getRomName()));
+            return null;
+        }
+        return room.addPlayer(clientChannel);
+    }
+
+    private Room createRoom(final String id, final Path rom) {
+        final Console console;
+        try {
+            console = new Console.Builder()
+                .setCartridgePath(rom.toString())
+                .build();
+        } catch (RuntimeException e) {
+            System.err.println(String.format("Could not load %s for room %s: %s", rom, id, e));
+            return null;
+        }
+        final Room room = new Room(id, rom.getFileName().toString(), console);
+        System.out.println("Created room " + room.toString());
+        return room;
+    }
+
+    /**
+     * Find the ROM a client asked for. Only files directly in the ROM directory can be played.
+     */
+    private Path resolveRom(final String romName) {
+        if (!Files.isDirectory(romPath)) {
+            return romPath;
+        }
+        if (romName.isEmpty() || romName.contains(File.separator) || romName.contains("/")) {
+            return null;
+        }
+        final Path rom = romPath.resolve(romName).normalize();
+        if (!rom.getParent().equals(romPath) || !Files.isRegularFile(rom)) {
+            return null;
+        }
+        return rom;
+    }
+
+    /**
+     * Queue a frame for every room with players and evict rooms that have been empty for too long.
+     */
+    private void tick() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<Room> roomIter = rooms.values().iterator(); roomIter.hasNext(); ) {
+            final Room room = roomIter.next();
+            if (room.hasPlayers()) {
+                if (room.tryStartFrame()) {
+                    workers.execute(() -> room.runFrame(networkEventLoop));
+                }
+            } else {
+                // Synchronized with join() so nobody joins a room as it's being evicted
+                synchronized (this) {
+                    if (room.idleTime(now) >= IDLE_EVICTION_TIME) {
+                        roomIter.remove();
+                        System.out.println("Evicted idle room " + room.toString());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -8,12 +8,21 @@ import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import screen.MainScreen;
+import web.transport.FrameDecoder;
 import web.transport.ImageMessage;
+import web.transport.JoinMessage;
 
 /**
  * This is run on clients connecting to a WhiteRavenServer instance over the network.
  */
 public class WhiteRavenClient {
+    private static final String DEFAULT_ROOM_ID = "default";
+
+    /**
+     * Usage: WhiteRavenClient server_ip server_port [room_id] [rom_name]
+     *
+     * The ROM name is only needed when the server has a directory of games and the room doesn't exist yet.
+     */
     public static void main(String[] args) throws IOException {
         if (args.length < 2) {
             System.err.println("Provide a server IP address and port to connect to!");
@@ -21,18 +30,23 @@ public class WhiteRavenClient {
         }
         final String serverIPAddress = args[0];
         final int serverPort = Integer.parseInt(args[1]);
+        final String roomId = args.length > 2 ? args[2] : DEFAULT_ROOM_ID;
+        final String romName = args.length > 3 ? args[3] : "";
         final Socket socket = new Socket(serverIPAddress, serverPort);
-        System.out.println(String.format("Connected to a WhiteRaven server at: %s:%s", serverIPAddress, serverPort));
+        socket.getOutputStream().write(new JoinMessage(roomId, romName).serialize());
+        System.out.println(String.format(
+            "Connected to a WhiteRaven server at: %s:%s, room %s", serverIPAddress, serverPort, roomId));
         final Controller controller = new ClientKeyboardController(socket);
         ExecutorService clientThread = Executors.newSingleThreadExecutor();
         clientThread.execute(controller::initializeListener);
 
         final MainScreen screen = new MainScreen();
         final InputStream inputStream = socket.getInputStream();
+        final FrameDecoder frameDecoder = new FrameDecoder();
 
         // Listen indefinitely for image data to render
         for (; ; ) {
-            final int[] imageData = ImageMessage.deserialize(inputStream);
+            final int[] imageData = frameDecoder.decode(ImageMessage.deserialize(inputStream));
             screen.push(imageData);
             screen.redraw();
         }
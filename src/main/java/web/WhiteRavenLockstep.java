@@ -0,0 +1,96 @@
+package web;
+
+import io.KeyboardController;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import nes.Console;
+import screen.MainScreen;
+
+/**
+ * Peer to peer netplay where both players run the game on their own machine. Only the buttons pressed each frame are
+ * sent over the network, instead of a server streaming video to everyone. Both players need the same ROM.
+ *
+ * By default every frame waits for both players' buttons (see LockstepSession). With --rollback frames run right away
+ * on a guess of the other player's buttons and are corrected when they arrive (see RollbackSession), which feels much
+ * better when the players are far apart. Both players have to pick the same mode.
+ */
+public class WhiteRavenLockstep {
+    private static final String ROLLBACK_OPTION = "--rollback";
+
+    /**
+     * Usage: WhiteRavenLockstep [--rollback] host path/to/game.nes port
+     *        WhiteRavenLockstep [--rollback] join path/to/game.nes host_ip port
+     *
+     * The player hosting is the first player.
+     */
+    public static void main(String[] args) throws IOException {
+        final boolean rollback = args.length > 0 && args[0].equals(ROLLBACK_OPTION);
+        if (rollback) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        final boolean host = args.length == 3 && args[0].equals("host");
+        final boolean join = args.length == 4 && args[0].equals("join");
+        if (!host && !join) {
+            System.err.println("Usage: [--rollback] host <rom_file> <port> | [--rollback] join <rom_file> <host_ip> <port>");
+            System.exit(1);
+        }
+        final String pathToGame = args[1];
+
+        final Socket socket;
+        if (host) {
+            final int port = Integer.parseInt(args[2]);
+            try (ServerSocket serverSocket = new ServerSocket(port)) {
+                System.out.println(String.format("Waiting for the other player on port %s", port));
+                socket = serverSocket.accept();
+            }
+        } else {
+            socket = new Socket(args[2], Integer.parseInt(args[3]));
+        }
+        System.out.println("Connected to " + socket.getRemoteSocketAddress());
+
+        if (!sameRom(socket, pathToGame)) {
+            System.err.println("The other player is running a different ROM!");
+            socket.close();
+            System.exit(1);
+        }
+
+        final Console console = new Console.Builder()
+            .setCartridgePath(pathToGame)
+            .build();
+        final KeyboardController keyboardController = new KeyboardController();
+        final MainScreen screen = new MainScreen();
+
+        final Consumer<Console> drawFrame = c -> {
+            final int[] image = c.ppu.acquireImage();
+            screen.push(image);
+            c.ppu.releaseImage(image);
+            screen.redraw();
+        };
+        final Runnable session = rollback
+            ? new RollbackSession(console, socket, host, keyboardController::getButtonMask, drawFrame)
+            : new LockstepSession(console, socket, host, keyboardController::getButtonMask, drawFrame);
+        session.run();
+        System.exit(0);
+    }
+
+    /**
+     * Swap checksums of the ROM file with the other player, since lockstep only works if both run the same game.
+     */
+    private static boolean sameRom(final Socket socket, final String pathToGame) throws IOException {
+        final CRC32 romChecksum = new CRC32();
+        romChecksum.update(Files.readAllBytes(Paths.get(pathToGame)));
+
+        final DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+        outputStream.writeLong(romChecksum.getValue());
+        outputStream.flush();
+        return new DataInputStream(socket.getInputStream()).readLong() == romChecksum.getValue();
+    }
+}
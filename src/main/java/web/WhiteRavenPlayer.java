@@ -1,53 +1,159 @@
 package web;
 
-import java.io.*;
-import java.net.Socket;
-import java.net.SocketException;
+import io.NetworkJoypad;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import web.transport.ButtonMessage;
+import web.transport.ImageMessage;
 
 /**
- * Encapsulates a player's thread of the WhiteRavenServer over the network. This thread runs on the server and is
- * responsible for sending updates to the client (i.e. screens) and listening for client input.
+ * Encapsulates a player's connection to the WhiteRavenServer. Players don't have threads of their own: the server's
+ * NetworkEventLoop reads button messages off the channel into the player's joypad and writes queued images to the
+ * channel whenever it can take more.
+ *
+ * The emulation thread hands images over with sendImage(), which never blocks: images wait in a small queue until the
+ * event loop writes them. A new player can't decode deltas until it has a keyframe, and neither can a player that
+ * falls so far behind that the queue fills up (we drop what's queued, and the deltas after it build on what we
+ * dropped). Either way needsKeyframe() says so, and the room sends that player a keyframe of its own. Nobody else ever
+ * gets an extra keyframe because of it.
  */
-public class WhiteRavenPlayer extends Thread {
+public class WhiteRavenPlayer {
     private static int clientCount = 0;
 
-    // If we catch NUM_SOCKET_EXCEPTIONS socket exceptions in a row during image serialization, we'll mark this player
-    // as dead and it will be ejected from the client map.
-    private final static int NUM_SOCKET_EXCEPTIONS = 3;
+    private final static int MAX_QUEUED_IMAGES = 8;
+    private final static int INPUT_BUFFER_SIZE = 64;
     private final int clientId;
     private final ClientType clientType;
-    private OutputStream outputStream;
-    private int numRetries;
-    private boolean alive;
+    private final SocketChannel channel;
+    private final NetworkJoypad joypad; // Only players have one, viewers just watch
+    private final BlockingQueue<ImageMessage> imageQueue;
+    private final ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer; // The image being written, only used on the event loop
+    private volatile boolean alive;
+    private boolean needsKeyframe; // Only used from the thread calling sendImage()
 
     private WhiteRavenPlayer(
-            final Socket socket,
-            final ClientType clientType
+            final SocketChannel channel,
+            final ClientType clientType,
+            final NetworkJoypad joypad
     ) {
         this.clientId = clientCount++;
         this.clientType = clientType;
-        this.numRetries = NUM_SOCKET_EXCEPTIONS;
+        this.channel = channel;
+        this.joypad = joypad;
+        this.imageQueue = new ArrayBlockingQueue<>(MAX_QUEUED_IMAGES);
+        this.inputBuffer = ByteBuffer.allocateDirect(INPUT_BUFFER_SIZE);
         this.alive = true;
-        try {
-            this.outputStream = socket.getOutputStream();
-        } catch (IOException e) {
-            System.out.println(String.format("Can't connect to player: %s: ", this.toString()) + e.getMessage());
+        this.needsKeyframe = true;
+    }
+
+    /**
+     * Queue an image to be sent to the player. This never blocks. Deltas are dropped while the player needs a keyframe.
+     *
+     * @param imageMessage
+     */
+    public void sendImage(final ImageMessage imageMessage) {
+        if (imageMessage.isKeyframe()) {
+            needsKeyframe = false;
+        }
+        if (needsKeyframe) {
+            return;
+        }
+
+        if (!imageQueue.offer(imageMessage)) {
+            // The client can't keep up, start over from a keyframe
+            imageQueue.clear();
+            if (imageMessage.isKeyframe()) {
+                imageQueue.offer(imageMessage);
+            } else {
+                needsKeyframe = true;
+            }
         }
     }
 
     /**
-     * Sends an image to the player depending on whether or not
+     * Whether the player can't decode the next delta, because it just joined or we had to drop frames it hadn't been
+     * sent yet. Send it a keyframe instead.
      */
-    public void sendImage(final byte[] imageData) {
-        try {
-            this.getOutputStream().write(imageData);
-            this.numRetries = 0;
-        } catch (SocketException e) {
-            if (++numRetries >= NUM_SOCKET_EXCEPTIONS) {
-                this.alive = false;
+    public boolean needsKeyframe() {
+        return needsKeyframe;
+    }
+
+    /**
+     * Whether there are images waiting to be written to the channel
+     */
+    boolean hasPendingOutput() {
+        return outputBuffer != null || !imageQueue.isEmpty();
+    }
+
+    /**
+     * Read whatever button messages have arrived and apply them to the joypad.
+     *
+     * @return false if the client closed the connection
+     */
+    boolean readInput() throws IOException {
+        inputBuffer.clear();
+        final int numRead = channel.read(inputBuffer);
+        if (numRead < 0) {
+            return false;
+        }
+
+        inputBuffer.flip();
+        handleInput(inputBuffer);
+        return true;
+    }
+
+    /**
+     * Apply the button messages in a buffer to the joypad.
+     *
+     * @param buffer
+     */
+    void handleInput(final ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            final ButtonMessage buttonMessage = ButtonMessage.deserialize(buffer.get());
+            if (buttonMessage != null && joypad != null) {
+                joypad.handleButtonMessage(buttonMessage);
+            }
+        }
+    }
+
+    /**
+     * Write queued images until we run out or the channel can't take any more without blocking.
+     */
+    void writeOutput() throws IOException {
+        for (;;) {
+            if (outputBuffer == null) {
+                final ImageMessage imageMessage = imageQueue.poll();
+                if (imageMessage == null) {
+                    return;
+                }
+                outputBuffer = imageMessage.asByteBuffer();
+            }
+
+            channel.write(outputBuffer);
+            if (outputBuffer.hasRemaining()) {
+                return;
             }
+            outputBuffer = null;
+        }
+    }
+
+    /**
+     * Close the connection and mark the player dead so it's ejected from the client map.
+     */
+    void close() {
+        alive = false;
+        imageQueue.clear();
+        if (joypad != null) {
+            joypad.releaseAllButtons();
+        }
+        try {
+            channel.close();
         } catch (IOException e) {
-            System.out.println("Error serializing image to socket for client: " + this.clientId);
+            System.out.println("Error closing connection to client: " + this.clientId);
         }
     }
 
@@ -55,25 +161,17 @@ public class WhiteRavenPlayer extends Thread {
         return alive;
     }
 
-    private OutputStream getOutputStream() {
-        return outputStream;
-    }
-
     public String toString() {
         return clientId + ": " + clientType.toString();
     }
 
-    @Override
-    public void run() {
-        System.out.println(String.format("Client %d has connected as a %s", this.clientId, this.clientType.toString()));
-    }
-
     public static class Builder {
-        private Socket socket;
+        private SocketChannel channel;
         private ClientType clientType;
+        private NetworkJoypad joypad;
 
-        public Builder setSocket(final Socket socket) {
-            this.socket = socket;
+        public Builder setChannel(final SocketChannel channel) {
+            this.channel = channel;
             return this;
         }
 
@@ -82,8 +180,13 @@ public class WhiteRavenPlayer extends Thread {
             return this;
         }
 
+        public Builder setJoypad(final NetworkJoypad joypad) {
+            this.joypad = joypad;
+            return this;
+        }
+
         public WhiteRavenPlayer build() {
-            return new WhiteRavenPlayer(socket, clientType);
+            return new WhiteRavenPlayer(channel, clientType, joypad);
         }
     }
 }
@@ -1,116 +1,48 @@
 package web;
 
-import io.NetworkJoypad;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import nes.Console;
-import nes.Interrupt;
-import screen.WhiteRavenLauncher;
-import web.transport.ImageMessage;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
- * Launches a WhiteRaven server application that can open connections to clients (players).
+ * Launches a WhiteRaven server application that can open connections to clients (players). One server hosts any
+ * number of rooms, each running its own game; clients pick the room (and the ROM to start it with) when they connect.
  */
 public class WhiteRavenServer {
-    private static final int SERVER_PORT = 8888;
+    private static final int DEFAULT_SERVER_PORT = 8888;
     static final int FRAMES_PER_SECOND = 60;
     static final int FRAME_TIME = 17;
 
+    /**
+     * Usage: WhiteRavenServer path/to/game.nes|path/to/rom/directory [port]
+     */
     public static void main(String[] args) throws Exception {
-        ServerSocket connectionListener = new ServerSocket(SERVER_PORT);
-        System.out.println(String.format("Running WhiteRavenServer on port %s", SERVER_PORT));
         if (args.length < 1) {
-            System.err.println("Provide a file path to a game!");
+            System.err.println("Provide a file path to a game or a directory of games!");
             System.exit(1);
         }
-
-        final String pathToGame = args[0];
-        final Console console = new Console.Builder()
-            .setCartridgePath(pathToGame)
-            .build();
-        final Timer timer = new Timer();
-        final Map<ClientType, List<WhiteRavenPlayer>> players = new HashMap<>();
-        // Initialize the map
-        for (ClientType clientType : ClientType.values()) {
-            players.put(clientType, new ArrayList<>());
+        final Path romPath = Paths.get(args[0]);
+        if (!Files.exists(romPath)) {
+            System.err.println("No such game or directory: " + romPath);
+            System.exit(1);
         }
+        final int serverPort = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SERVER_PORT;
 
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                for (int i = 0; i < WhiteRavenLauncher.CPU_CYCLES_PER_SECOND / FRAMES_PER_SECOND; i++) {
-                    console.ppu.executeCycles(3);
-                    console.cpu.executeCycle();
-                    if (console.ppu.triggerVerticalBlank) {
-                        console.cpu.triggerInterrupt(Interrupt.NMI);
-                        console.ppu.triggerVerticalBlank = false;
-                        int[] image = console.ppu.getImage();
-                        final ImageMessage imageMessage = new ImageMessage(image);
-                        for (final List<WhiteRavenPlayer> playerList : players.values()) {
-                            for (final Iterator<WhiteRavenPlayer> playerIter = playerList.iterator(); playerIter.hasNext(); ) {
-                                final WhiteRavenPlayer player = playerIter.next();
-                                if (player.alive()) {
-                                    player.sendImage(imageMessage.serialize());
-                                } else {
-                                    playerIter.remove();
-                                    System.out.println("Player has died: " + player.toString());
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }, 0, FRAME_TIME);
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(serverPort));
+        System.out.println(String.format("Running WhiteRavenServer on port %s", serverPort));
 
-        // Open connections to new clients as they connect to the server. Close the socket once we've exited.
+        final RoomManager roomManager = new RoomManager(romPath);
+        final NetworkEventLoop eventLoop = new NetworkEventLoop(serverChannel, roomManager::join);
+        roomManager.start(eventLoop);
+
+        // Accept new clients and talk to all of them on this thread. Close the channel once we've exited.
         try {
-            while (true) {
-                // Blocks until we have a new connection
-                final Socket clientSocket = connectionListener.accept();
-                handleNewClient(console, clientSocket, players);
-            }
+            eventLoop.run();
         } finally {
-            connectionListener.close();
-        }
-    }
-
-    /**
-     * Handles a new connection by assigning this player a role and adding it to the map of current players.
-     *
-     * @param clientSocket
-     * @param playerMap
-     */
-    private static void handleNewClient(
-        final Console console,
-        final Socket clientSocket,
-        final Map<ClientType, List<WhiteRavenPlayer>> playerMap) {
-        final ClientType clientType;
-
-        if (playerMap.get(ClientType.FIRST_PLAYER).size() == 0) {
-            clientType = ClientType.FIRST_PLAYER;
-            console.setJoypadOne(new NetworkJoypad(clientSocket));
-        } else if (playerMap.get(ClientType.SECOND_PLAYER).size() == 0) {
-            clientType = ClientType.SECOND_PLAYER;
-            console.setJoypadTwo(new NetworkJoypad(clientSocket));
-        } else {
-            clientType = ClientType.VIEWER;
+            serverChannel.close();
         }
-
-        final WhiteRavenPlayer player = new WhiteRavenPlayer.Builder()
-            .setClientType(clientType)
-            .setSocket(clientSocket)
-            .build();
-
-        playerMap.get(clientType).add(player);
-
-        // Run the player's thread
-        player.start();
     }
 }
@@ -23,6 +23,8 @@ public enum ButtonMessage implements ByteSerializable {
     RIGHT_PRESSED,
     RIGHT_RELEASED;
 
+    private static final ButtonMessage[] VALUES = values();
+
     /**
      * Serialize the button event into one byte.
      *
@@ -40,6 +42,17 @@ public enum ButtonMessage implements ByteSerializable {
      * @return
      */
     public static ButtonMessage deserialize(final byte[] bytes) {
-        return ButtonMessage.values()[Utilities.toUnsignedValue(bytes[0])];
+        return deserialize(bytes[0]);
+    }
+
+    /**
+     * Deserialize a single byte into a button message.
+     *
+     * @param value
+     * @return The button message, or null if the byte isn't one
+     */
+    public static ButtonMessage deserialize(final byte value) {
+        final int ordinal = Utilities.toUnsignedValue(value);
+        return ordinal < VALUES.length ? VALUES[ordinal] : null;
     }
 }
@@ -0,0 +1,33 @@
+package web.transport;
+
+import nes.PPU;
+
+/**
+ * Layout shared by FrameEncoder and FrameDecoder. Frames are split into 8x8 tiles and every pixel is sent as its 6-bit
+ * system color index (one byte) rather than as RGB. A message holds a bitmap with one bit per tile that changed since
+ * the previous frame, followed by the 64 color indices of each of those tiles in order, all deflated. A keyframe is
+ * just a message with every tile marked.
+ */
+final class FrameCodec {
+    static final int TILE_SIZE = 8;
+    static final int PIXELS_PER_TILE = TILE_SIZE * TILE_SIZE;
+    static final int TILES_PER_ROW = PPU.SCREEN_WIDTH / TILE_SIZE;
+    static final int TILES_PER_COLUMN = PPU.SCREEN_HEIGHT / TILE_SIZE;
+    static final int NUM_TILES = TILES_PER_ROW * TILES_PER_COLUMN;
+    static final int TILE_BITMAP_SIZE = NUM_TILES / 8;
+    static final int MAX_FRAME_SIZE = TILE_BITMAP_SIZE + NUM_TILES * PIXELS_PER_TILE;
+    // Deflating never grows the data by more than a few bytes per 16 KiB block
+    static final int MAX_DEFLATED_FRAME_SIZE = MAX_FRAME_SIZE + MAX_FRAME_SIZE / 1000 + 64;
+
+    private FrameCodec() {}
+
+    /**
+     * Returns the index in the frame of the first pixel of a tile.
+     *
+     * @param tile
+     * @return
+     */
+    static int tileOrigin(final int tile) {
+        return (tile / TILES_PER_ROW) * TILE_SIZE * PPU.SCREEN_WIDTH + (tile % TILES_PER_ROW) * TILE_SIZE;
+    }
+}
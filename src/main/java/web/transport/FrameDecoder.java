@@ -0,0 +1,67 @@
+package web.transport;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import nes.PPU;
+
+/**
+ * Rebuilds frames on the client from the ImageMessages made by a FrameEncoder. Delta frames only make sense on top of
+ * a keyframe, so they're ignored until the first keyframe arrives.
+ */
+public class FrameDecoder {
+    private final int[] frame;
+    private final byte[] rawMessage;
+    private final Inflater inflater;
+    private boolean synced;
+
+    public FrameDecoder() {
+        frame = new int[PPU.SCREEN_WIDTH * PPU.SCREEN_HEIGHT];
+        rawMessage = new byte[FrameCodec.MAX_FRAME_SIZE];
+        inflater = new Inflater();
+        synced = false;
+    }
+
+    /**
+     * Apply a message to the current frame.
+     *
+     * @param imageMessage
+     * @return The RGB frame, which is reused by the next call to decode(), or null if we haven't seen a keyframe yet
+     */
+    public int[] decode(final ImageMessage imageMessage) {
+        if (!imageMessage.isKeyframe() && !synced) {
+            return null;
+        }
+
+        inflater.reset();
+        imageMessage.setInflaterInput(inflater);
+        final int size;
+        try {
+            size = inflater.inflate(rawMessage);
+        } catch (DataFormatException e) {
+            System.out.println("Could not decode image: " + e.getMessage());
+            synced = false;
+            return null;
+        }
+
+        int position = FrameCodec.TILE_BITMAP_SIZE;
+        for (int tile = 0; tile < FrameCodec.NUM_TILES && position < size; tile++) {
+            if ((rawMessage[tile >> 3] & (1 << (tile & 0x07))) != 0) {
+                writeTile(tile, position);
+                position += FrameCodec.PIXELS_PER_TILE;
+            }
+        }
+
+        synced = true;
+        return frame;
+    }
+
+    private void writeTile(final int tile, final int position) {
+        final int origin = FrameCodec.tileOrigin(tile);
+        for (int y = 0; y < FrameCodec.TILE_SIZE; y++) {
+            final int row = origin + y * PPU.SCREEN_WIDTH;
+            for (int x = 0; x < FrameCodec.TILE_SIZE; x++) {
+                frame[row + x] = PPU.systemColorToRGB(rawMessage[position + y * FrameCodec.TILE_SIZE + x]);
+            }
+        }
+    }
+}
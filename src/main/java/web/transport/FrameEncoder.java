@@ -0,0 +1,124 @@
+package web.transport;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import nes.PPU;
+
+/**
+ * Turns frames from the PPU into ImageMessages that only carry the tiles that changed since the previous frame, with a
+ * keyframe every keyframeInterval frames (or on request) so new or out of sync clients can recover. See FrameCodec
+ * for the layout. An encoder keeps the last frame it encoded, so use one encoder per stream of frames.
+ *
+ * Clients that join a stream late or drop frames can also be brought back in sync on their own with
+ * encodeSyncKeyframe(), without making everyone else's next frame a keyframe.
+ */
+public class FrameEncoder {
+    public static final int NO_PERIODIC_KEYFRAMES = 0;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 60; // One a second
+
+    private final int keyframeInterval;
+    private final byte[] previousColors; // Color indices of the last frame we encoded, by tile
+    private final byte[] tileColors;
+    private final byte[] rawMessage;
+    private final byte[] deflatedMessage;
+    private final Deflater deflater;
+    private int framesSinceKeyframe;
+    private boolean keyframeRequested;
+
+    public FrameEncoder() {
+        this(DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * @param keyframeInterval How often to send a keyframe, in frames, or NO_PERIODIC_KEYFRAMES to only send them on
+     *                         request
+     */
+    public FrameEncoder(final int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+        previousColors = new byte[FrameCodec.NUM_TILES * FrameCodec.PIXELS_PER_TILE];
+        tileColors = new byte[FrameCodec.PIXELS_PER_TILE];
+        rawMessage = new byte[FrameCodec.MAX_FRAME_SIZE];
+        deflatedMessage = new byte[FrameCodec.MAX_DEFLATED_FRAME_SIZE];
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        keyframeRequested = true;
+    }
+
+    /**
+     * Make the next encoded frame a keyframe.
+     */
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /**
+     * Encode a frame from the PPU.
+     *
+     * @param frame
+     * @return
+     */
+    public ImageMessage encode(final int[] frame) {
+        final boolean keyframe = keyframeRequested
+            || (keyframeInterval != NO_PERIODIC_KEYFRAMES && framesSinceKeyframe >= keyframeInterval - 1);
+        Arrays.fill(rawMessage, 0, FrameCodec.TILE_BITMAP_SIZE, (byte) 0x0);
+        int size = FrameCodec.TILE_BITMAP_SIZE;
+
+        for (int tile = 0; tile < FrameCodec.NUM_TILES; tile++) {
+            readTileColors(frame, tile);
+            final int previousOffset = tile * FrameCodec.PIXELS_PER_TILE;
+            if (keyframe || !rangeEquals(tileColors, previousColors, previousOffset)) {
+                System.arraycopy(tileColors, 0, previousColors, previousOffset, FrameCodec.PIXELS_PER_TILE);
+                System.arraycopy(tileColors, 0, rawMessage, size, FrameCodec.PIXELS_PER_TILE);
+                size += FrameCodec.PIXELS_PER_TILE;
+                rawMessage[tile >> 3] |= 1 << (tile & 0x07);
+            }
+        }
+
+        if (keyframe) {
+            framesSinceKeyframe = 0;
+            keyframeRequested = false;
+        } else {
+            framesSinceKeyframe++;
+        }
+        return deflate(size, keyframe);
+    }
+
+    /**
+     * Encode the last frame passed to encode() again, as a keyframe. A client that decodes this instead of the message
+     * encode() returned for that frame ends up with the same picture, so it can decode the deltas that follow like
+     * everyone else. The stream itself carries on as before.
+     *
+     * @return
+     */
+    public ImageMessage encodeSyncKeyframe() {
+        Arrays.fill(rawMessage, 0, FrameCodec.TILE_BITMAP_SIZE, (byte) 0xFF);
+        System.arraycopy(previousColors, 0, rawMessage, FrameCodec.TILE_BITMAP_SIZE, previousColors.length);
+        return deflate(FrameCodec.MAX_FRAME_SIZE, true);
+    }
+
+    private ImageMessage deflate(final int size, final boolean keyframe) {
+        deflater.reset();
+        deflater.setInput(rawMessage, 0, size);
+        deflater.finish();
+        final int deflatedSize = deflater.deflate(deflatedMessage);
+        return new ImageMessage(keyframe, deflatedMessage, deflatedSize);
+    }
+
+    private void readTileColors(final int[] frame, final int tile) {
+        final int origin = FrameCodec.tileOrigin(tile);
+        for (int y = 0; y < FrameCodec.TILE_SIZE; y++) {
+            final int row = origin + y * PPU.SCREEN_WIDTH;
+            for (int x = 0; x < FrameCodec.TILE_SIZE; x++) {
+                tileColors[y * FrameCodec.TILE_SIZE + x] = (byte) PPU.colorIndexOf(frame[row + x]);
+            }
+        }
+    }
+
+    private static boolean rangeEquals(final byte[] tile, final byte[] colors, final int offset) {
+        for (int i = 0; i < tile.length; i++) {
+            if (tile[i] != colors[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
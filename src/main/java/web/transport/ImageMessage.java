@@ -1,84 +1,93 @@
 package web.transport;
 
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import javax.imageio.ImageIO;
-import nes.PPU;
+import java.util.zip.Inflater;
 
 /**
- * Encapsulates a png image we send over the wire from the WhiteRavenServer to each client. This is reconstructed
+ * Encapsulates a frame we send over the wire from the WhiteRavenServer to each client. Messages are made by a
+ * FrameEncoder and turned back into frames by a FrameDecoder; this class only deals with getting them across a
+ * socket. Messages are immutable, and are serialized once into a heap array when they're made so the same bytes can
+ * be written to any number of players' channels. That's the only copy of the frame data we keep.
  */
 public class ImageMessage implements ByteSerializable {
-    private static final int SCREEN_WIDTH = PPU.SCREEN_WIDTH;
-    private static final int SCREEN_HEIGHT = PPU.SCREEN_HEIGHT;
     private static final int INT_SIZE = 4;
-    private byte[] imageMessageSize;
-    private byte[] imageMessage;
+    private static final int FRAME_DATA_OFFSET = INT_SIZE + 1;
+    private static final byte KEYFRAME = 0x1;
+    private static final byte DELTA_FRAME = 0x0;
 
-    public ImageMessage(final int[] imageData) {
-        final BufferedImage image = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
-        final int[] a = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
-        System.arraycopy(imageData, 0, a, 0, imageData.length);
+    private final byte[] message; // The length, the keyframe byte, then the frame data
 
-        try {
-            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", byteArrayOutputStream);
-            imageMessageSize = ByteBuffer.allocate(INT_SIZE).putInt(byteArrayOutputStream.size()).array();
-            imageMessage = byteArrayOutputStream.toByteArray();
-        } catch (IOException e) {
-            System.out.println("Could not serialize image: " + e.getMessage());
-        }
+    /**
+     * @param keyframe
+     * @param frameData Holds the frame data, which is copied
+     * @param length    How many bytes of frameData to send
+     */
+    ImageMessage(final boolean keyframe, final byte[] frameData, final int length) {
+        this.message = new byte[FRAME_DATA_OFFSET + length];
+        ByteBuffer.wrap(message)
+            .putInt(1 + length)
+            .put(keyframe ? KEYFRAME : DELTA_FRAME)
+            .put(frameData, 0, length);
+    }
+
+    private ImageMessage(final byte[] message) {
+        this.message = message;
+    }
+
+    /**
+     * Whether this message holds a whole frame, as opposed to the tiles that changed since the previous one
+     */
+    public boolean isKeyframe() {
+        return message[INT_SIZE] == KEYFRAME;
     }
 
     /**
-     * Serialize the image into an array of bytes. The protocol we follow is to compress the image using png, then
-     * sending the length of the message in an int, then sending the compressed image data over as bytes.
+     * Hand the frame data to an inflater, without copying it.
+     *
+     * @param inflater
+     */
+    void setInflaterInput(final Inflater inflater) {
+        inflater.setInput(message, FRAME_DATA_OFFSET, message.length - FRAME_DATA_OFFSET);
+    }
+
+    /**
+     * Serialize the image into an array of bytes. The protocol we follow is to send the length of the rest of the
+     * message in an int, then whether it's a keyframe in a byte, then the encoded frame data.
      *
      * @return
      */
     @Override
     public byte[] serialize() {
-        final byte[] arr = new byte[imageMessageSize.length + imageMessage.length];
-        int i = 0;
-        for (byte b : imageMessageSize) {
-            arr[i++] = b;
-        }
-        for (byte b : imageMessage) {
-            arr[i++] = b;
-        }
-        return arr;
+        return message.clone();
     }
 
     /**
-     * Deserialize a message over the socket into full blown image data.
+     * Returns a read only view of the serialized message. Every call gets its own position, so each player can write
+     * the same message out at its own pace.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(message).asReadOnlyBuffer();
+    }
+
+    /**
+     * Deserialize a message over the socket. Blocks until the whole message has arrived.
      *
      * @param inputStream
      * @return
+     * @throws IOException if the stream fails or ends, or the length we read can't be that of a message
      */
-    public static int[] deserialize(final InputStream inputStream) throws IOException {
-        final byte[] sizeAr = new byte[INT_SIZE];
-        inputStream.read(sizeAr);
-        int size = ByteBuffer.wrap(sizeAr).asIntBuffer().get();
-        final byte[] imageAr = new byte[size];
-
-        // Wait until we've received all bytes required for an image
-        while (inputStream.available() < size) {
-            ;
+    public static ImageMessage deserialize(final InputStream inputStream) throws IOException {
+        final DataInputStream dataInputStream = new DataInputStream(inputStream);
+        final int size = dataInputStream.readInt();
+        if (size < 1 || size > 1 + FrameCodec.MAX_DEFLATED_FRAME_SIZE) {
+            throw new IOException("Invalid image message length: " + size);
         }
-
-        inputStream.read(imageAr);
-        final BufferedImage im = ImageIO.read(new ByteArrayInputStream(imageAr));
-        final BufferedImage image = new BufferedImage(im.getWidth(), im.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = image.createGraphics();
-        g.drawImage(im, 0, 0, null);
-        g.dispose();
-
-        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final byte[] message = new byte[INT_SIZE + size];
+        ByteBuffer.wrap(message).putInt(size);
+        dataInputStream.readFully(message, INT_SIZE, size);
+        return new ImageMessage(message);
     }
 }
@@ -0,0 +1,57 @@
+package web.transport;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * What lockstep netplay peers send each other every frame: the buttons a player holds on a frame, and every so often
+ * the checksum of the sender's console at the start of an earlier frame so the peers can tell if they've desynced.
+ *
+ * The layout is fixed: the frame as an int, the button mask as a byte, the frame the checksum is for as an int (-1 if
+ * there's no checksum), and the checksum as a long.
+ */
+public class InputMessage implements ByteSerializable {
+    public static final int NO_CHECKSUM = -1;
+    private static final int MESSAGE_SIZE = 4 + 1 + 4 + 8;
+
+    public final int frame;
+    public final byte buttons;
+    public final int checksumFrame;
+    public final long checksum;
+
+    public InputMessage(final int frame, final byte buttons, final int checksumFrame, final long checksum) {
+        this.frame = frame;
+        this.buttons = buttons;
+        this.checksumFrame = checksumFrame;
+        this.checksum = checksum;
+    }
+
+    public boolean hasChecksum() {
+        return checksumFrame != NO_CHECKSUM;
+    }
+
+    @Override
+    public byte[] serialize() {
+        return ByteBuffer.allocate(MESSAGE_SIZE)
+            .putInt(frame)
+            .put(buttons)
+            .putInt(checksumFrame)
+            .putLong(checksum)
+            .array();
+    }
+
+    /**
+     * Read a message off a stream, blocking until all of it has arrived.
+     *
+     * @param inputStream
+     * @return
+     */
+    public static InputMessage deserialize(final DataInputStream inputStream) throws IOException {
+        final int frame = inputStream.readInt();
+        final byte buttons = inputStream.readByte();
+        final int checksumFrame = inputStream.readInt();
+        final long checksum = inputStream.readLong();
+        return new InputMessage(frame, buttons, checksumFrame, checksum);
+    }
+}
@@ -0,0 +1,87 @@
+package web.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The first message a client sends after connecting, naming the room to join and the ROM to play in it. If no room with
+ * that ID exists yet, the server creates one running the ROM. Both strings are sent as a two byte length followed by
+ * their UTF-8 bytes.
+ */
+public class JoinMessage implements ByteSerializable {
+    private static final int LENGTH_SIZE = 2;
+    private static final int MAX_STRING_LENGTH = 0xFF;
+
+    public final String roomId;
+    public final String romName;
+
+    public JoinMessage(final String roomId, final String romName) {
+        this.roomId = roomId;
+        this.romName = romName;
+    }
+
+    @Override
+    public byte[] serialize() {
+        try {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+            writeString(dataOutputStream, roomId);
+            writeString(dataOutputStream, romName);
+            return byteArrayOutputStream.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize join message", e);
+        }
+    }
+
+    private static void writeString(final DataOutputStream dataOutputStream, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Room IDs and ROM names can be at most 255 bytes: " + value);
+        }
+        dataOutputStream.writeShort(bytes.length);
+        dataOutputStream.write(bytes);
+    }
+
+    /**
+     * Deserialize a join message from the bytes received so far. If the whole message is there it's consumed from the
+     * buffer, otherwise the buffer is left as it was.
+     *
+     * @param buffer
+     * @return The message, or null if we haven't received all of it yet
+     * @throws IllegalArgumentException if the bytes can't be a join message
+     */
+    public static JoinMessage deserialize(final ByteBuffer buffer) {
+        final int start = buffer.position();
+        final String roomId = readString(buffer);
+        final String romName = roomId == null ? null : readString(buffer);
+        if (romName == null) {
+            buffer.position(start);
+            return null;
+        }
+        return new JoinMessage(roomId, romName);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        if (buffer.remaining() < LENGTH_SIZE) {
+            return null;
+        }
+        final int length = buffer.getShort() & 0xFFFF;
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Join message string too long: " + length);
+        }
+        if (buffer.remaining() < length) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("room %s (%s)", roomId, romName);
+    }
+}